@@ -0,0 +1,79 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.Arrays;
+
+/**
+ * Minimal timing harness for the LED microbenchmarks. Each measurement is warmed up so the JIT has
+ * compiled the code under test, then timed over enough iterations to swamp the timer resolution.
+ *
+ * <p>Results are indicative only; run on the roboRIO for numbers that matter to the robot loop.
+ */
+final class Benchmark {
+  private Benchmark() {
+    throw new UnsupportedOperationException("This is a utility class!");
+  }
+
+  private static final int kWarmupIterations = 2_000;
+  private static final int kMeasuredIterations = 5_000;
+
+  /**
+   * Times a piece of code and prints the average time per call.
+   *
+   * @param name the name to print with the result
+   * @param body the code to time
+   * @return the average time per call, in nanoseconds
+   */
+  static double run(String name, Runnable body) {
+    for (int i = 0; i < kWarmupIterations; i++) {
+      body.run();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < kMeasuredIterations; i++) {
+      body.run();
+    }
+    double nanosPerCall = (System.nanoTime() - start) / (double) kMeasuredIterations;
+
+    System.out.printf("%-50s %10.2f us/op%n", name, nanosPerCall / 1000.0);
+    return nanosPerCall;
+  }
+
+  /**
+   * Times each call of a piece of code separately, as for frames that each have to meet a budget,
+   * and prints the average, the 99th percentile and the slowest. The slowest call on a desktop is
+   * set by the OS scheduler and the garbage collector rather than by the code, so only the
+   * percentile is returned for checking against a budget.
+   *
+   * @param name the name to print with the result
+   * @param body the code to time
+   * @return the 99th percentile time per call, in nanoseconds
+   */
+  static long runEach(String name, Runnable body) {
+    for (int i = 0; i < kWarmupIterations; i++) {
+      body.run();
+    }
+
+    long[] nanos = new long[kMeasuredIterations];
+    long total = 0;
+    for (int i = 0; i < kMeasuredIterations; i++) {
+      long start = System.nanoTime();
+      body.run();
+      nanos[i] = System.nanoTime() - start;
+      total += nanos[i];
+    }
+    Arrays.sort(nanos);
+    long p99 = nanos[kMeasuredIterations * 99 / 100];
+
+    System.out.printf(
+        "%-50s %10.2f us/op %10.2f us p99 %10.2f us max%n",
+        name,
+        total / 1000.0 / kMeasuredIterations,
+        p99 / 1000.0,
+        nanos[kMeasuredIterations - 1] / 1000.0);
+    return p99;
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Cost of writing and reading every pixel of a strip of the maximum length the roboRIO supports,
+ * comparing the whole-pixel int accesses {@link AddressableLEDBuffer} makes with the byte at a
+ * time accesses it used to make.
+ *
+ * <p>Run it on the roboRIO as well as on a desktop; the JIT on 32-bit ARM optimizes the int view
+ * of the byte array differently from the one on x86-64 and AArch64.
+ */
+public final class LEDBufferAccessBenchmark {
+  private LEDBufferAccessBenchmark() {}
+
+  private static final int kMaxLength = 5460;
+
+  private static int s_sink; // keeps the reads from being optimized away
+
+  public static void main(String... args) {
+    var buffer = new AddressableLEDBuffer(kMaxLength);
+    byte[] bytes = new byte[kMaxLength * 4];
+
+    System.out.println("Writing and reading " + kMaxLength + " LEDs");
+
+    Benchmark.run(
+        "byte-wise stores",
+        () -> {
+          for (int i = 0; i < kMaxLength; i++) {
+            bytes[i * 4] = (byte) i;
+            bytes[(i * 4) + 1] = (byte) (i >> 1);
+            bytes[(i * 4) + 2] = (byte) (i >> 2);
+            bytes[(i * 4) + 3] = 0;
+          }
+        });
+
+    Benchmark.run(
+        "AddressableLEDBuffer.setRGB",
+        () -> {
+          for (int i = 0; i < kMaxLength; i++) {
+            buffer.setRGB(i, i >> 2, i >> 1, i);
+          }
+        });
+
+    Benchmark.run(
+        "AddressableLEDBuffer.setPacked",
+        () -> {
+          for (int i = 0; i < kMaxLength; i++) {
+            buffer.setPacked(i, i * 0x010203);
+          }
+        });
+
+    Benchmark.run(
+        "byte-wise reads of each channel",
+        () -> {
+          int sum = 0;
+          for (int i = 0; i < kMaxLength; i++) {
+            sum +=
+                Color.packRGB(
+                    bytes[i * 4 + 2] & 0xFF, bytes[i * 4 + 1] & 0xFF, bytes[i * 4] & 0xFF);
+          }
+          s_sink += sum;
+        });
+
+    Benchmark.run(
+        "AddressableLEDBuffer.getPacked",
+        () -> {
+          int sum = 0;
+          for (int i = 0; i < kMaxLength; i++) {
+            sum += buffer.getPacked(i);
+          }
+          s_sink += sum;
+        });
+
+    System.out.println("(checksum " + s_sink + ")");
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Cost per frame of the {@link LEDColorCorrection} output stage at the maximum strip length the
+ * roboRIO supports, compared with a plain copy of the frame and with correcting every channel with
+ * {@code Math.pow} as a pattern would have to.
+ */
+public final class LEDColorCorrectionBenchmark {
+  private LEDColorCorrectionBenchmark() {}
+
+  private static final int kMaxLength = 5460;
+
+  public static void main(String... args) {
+    var buffer = new AddressableLEDBuffer(kMaxLength);
+    for (int i = 0; i < kMaxLength; i++) {
+      buffer.setRGB(i, i % 256, (i * 7) % 256, (i * 13) % 256);
+    }
+    byte[] output = new byte[buffer.m_buffer.length];
+    var correction = new LEDColorCorrection(2.2, 1.0, 0.95, 0.8, 0.5);
+
+    System.out.println("Color correction of " + kMaxLength + " LEDs per frame");
+
+    Benchmark.run(
+        "copy only (no correction)",
+        () -> System.arraycopy(buffer.m_buffer, 0, output, 0, output.length));
+
+    Benchmark.run(
+        "LEDColorCorrection lookup tables",
+        () -> correction.apply(buffer.m_buffer, output, 0, kMaxLength));
+
+    Benchmark.run(
+        "Math.pow per channel",
+        () -> {
+          byte[] data = buffer.m_buffer;
+          for (int i = 0; i < data.length; i += 4) {
+            output[i] = (byte) Math.round(Math.pow((data[i] & 0xFF) / 255.0, 2.2) * 0.4 * 255);
+            output[i + 1] =
+                (byte) Math.round(Math.pow((data[i + 1] & 0xFF) / 255.0, 2.2) * 0.475 * 255);
+            output[i + 2] =
+                (byte) Math.round(Math.pow((data[i + 2] & 0xFF) / 255.0, 2.2) * 0.5 * 255);
+          }
+        });
+  }
+}
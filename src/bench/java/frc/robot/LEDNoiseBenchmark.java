@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static frc.robot.AllocationAssertions.kFrameBudgetMicros;
+
+import edu.wpi.first.util.WPIUtilJNI;
+
+/**
+ * Cost of a frame of the procedural fire, plasma and noise patterns on a 1000 LED strip, checked
+ * against the frame budget the tests use ({@link AllocationAssertions#kFrameBudgetMicros}), next
+ * to a plasma written the obvious way with {@code Math.sin} and {@code Math.random} for
+ * comparison.
+ *
+ * <p>The clock is mocked and advanced by one robot loop per frame, so the fire simulation steps as
+ * it would on the robot. Every frame is timed on its own, and the benchmark exits with status 1 if
+ * the 99th percentile frame of any of the patterns is over budget. The slowest frame is printed
+ * too, but not checked: on a desktop it is set by OS scheduling and garbage collection, not by the
+ * patterns.
+ */
+public final class LEDNoiseBenchmark {
+  private LEDNoiseBenchmark() {}
+
+  private static final int kLength = 1000;
+
+  private static final long kLoopMicros = 20_000;
+
+  private static long s_now;
+
+  public static void main(String... args) {
+    WPIUtilJNI.enableMockTime();
+    var buffer = new AddressableLEDBuffer(kLength);
+
+    System.out.println(
+        "Rendering " + kLength + " LEDs per frame, budget " + kFrameBudgetMicros + " us per frame");
+
+    LEDPattern naivePlasma = (reader, writer) -> {
+      double t = WPIUtilJNI.now() / 1e6;
+      for (int led = 0; led < reader.getLength(); led++) {
+        double v = (Math.sin(led * 0.12 + t) + Math.sin(led * 0.27 - 2 * t) + 2) / 4;
+        writer.setHSV(led, (int) (v * 180), 255, (int) (200 + Math.random() * 55));
+      }
+    };
+    time("naive plasma (Math.sin, Math.random)", naivePlasma, buffer);
+
+    boolean withinBudget = true;
+    withinBudget &= time("fire", LEDPattern.fire(LEDPalette.heat(), 55, 120), buffer);
+    withinBudget &=
+        time("plasma", LEDPattern.plasma(LEDPalette.rainbow(255, 255), Seconds.of(4)), buffer);
+    withinBudget &=
+        time(
+            "noise",
+            LEDPattern.noise(LEDPalette.gradient(Color.kBlue, Color.kAqua), 20, Seconds.of(1)),
+            buffer);
+
+    WPIUtilJNI.disableMockTime();
+    if (!withinBudget) {
+      System.out.println("Over budget");
+      System.exit(1);
+    }
+  }
+
+  private static boolean time(String name, LEDPattern pattern, AddressableLEDBuffer buffer) {
+    long p99Nanos =
+        Benchmark.runEach(
+            name,
+            () -> {
+              s_now += kLoopMicros;
+              WPIUtilJNI.setMockTime(s_now);
+              pattern.applyTo(buffer);
+            });
+    return p99Nanos / 1000.0 <= kFrameBudgetMicros;
+  }
+}
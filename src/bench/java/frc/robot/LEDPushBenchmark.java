@@ -0,0 +1,49 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+
+/**
+ * Cost of pushing a frame of the maximum length the roboRIO supports to the LED driver, when the
+ * whole strip changed and when only one LED did.
+ *
+ * <p>This runs against the simulation HAL, so it needs the desktop HAL natives on the library path
+ * (see the benchmark task in build.gradle).
+ */
+public final class LEDPushBenchmark {
+  private LEDPushBenchmark() {}
+
+  private static final int kMaxLength = 5460;
+
+  public static void main(String... args) {
+    HAL.initialize(500, 0);
+
+    try (var led = new AddressableLED(0)) {
+      led.setLength(kMaxLength);
+      var buffer = new AddressableLEDBuffer(kMaxLength);
+
+      System.out.println("Pushing " + kMaxLength + " LEDs per frame");
+
+      // writing the first and last LEDs makes the whole strip count as changed
+      Benchmark.run(
+          "whole strip changed",
+          () -> {
+            buffer.setPacked(0, 0x102030);
+            buffer.setPacked(kMaxLength - 1, 0x102030);
+            led.setData(buffer);
+          });
+
+      Benchmark.run(
+          "one LED changed",
+          () -> {
+            buffer.setPacked(kMaxLength / 2, 0x102030);
+            led.setData(buffer);
+          });
+    }
+
+    HAL.shutdown();
+  }
+}
@@ -4,11 +4,6 @@
 
 package frc.robot;
 
-import edu.wpi.first.hal.AddressableLEDJNI;
-import edu.wpi.first.hal.FRCNetComm.tResourceType;
-import edu.wpi.first.hal.HAL;
-import edu.wpi.first.hal.PWMJNI;
-
 /**
  * A class for driving addressable LEDs, such as WS2812Bs and NeoPixels.
  *
@@ -16,10 +11,16 @@ import edu.wpi.first.hal.PWMJNI;
  *
  * <p>Only 1 LED driver is currently supported by the roboRIO. However, multiple LED strips can be
  * connected in series and controlled from the single driver.
+ *
+ * <p>Frames go to the roboRIO's LED driver by default, or to any other {@link LEDOutput}, such as
+ * an {@link LEDFrameCapture} that records them for tests.
  */
 public class AddressableLED implements AutoCloseable {
-  private final int m_pwmHandle;
-  private final int m_handle;
+  private final LEDOutput m_output;
+  private LEDColorCorrection m_colorCorrection;
+  private byte[] m_correctedData = new byte[0];
+  private LEDPowerLimiter m_powerLimiter;
+  private AddressableLEDBuffer m_lastBuffer; // buffer the output stages are caught up with
 
   /**
    * Constructs a new driver for a specific port.
@@ -27,19 +28,21 @@ public class AddressableLED implements AutoCloseable {
    * @param port the output port to use (Must be a PWM header, not on MXP)
    */
   public AddressableLED(int port) {
-    m_pwmHandle = PWMJNI.initializePWMPort(HAL.getPort((byte) port));
-    m_handle = AddressableLEDJNI.initialize(m_pwmHandle);
-    HAL.report(tResourceType.kResourceType_AddressableLEDs, port + 1);
+    this(LEDOutput.hal(port));
+  }
+
+  /**
+   * Constructs a new driver that sends its frames to an output of its own.
+   *
+   * @param output where to send the frames; closed when this is closed
+   */
+  public AddressableLED(LEDOutput output) {
+    m_output = output;
   }
 
   @Override
   public void close() {
-    if (m_handle != 0) {
-      AddressableLEDJNI.free(m_handle);
-    }
-    if (m_pwmHandle != 0) {
-      PWMJNI.freePWMPort(m_pwmHandle);
-    }
+    m_output.close();
   }
 
   /**
@@ -52,7 +55,7 @@ public class AddressableLED implements AutoCloseable {
    * @param length the strip length
    */
   public void setLength(int length) {
-    AddressableLEDJNI.setLength(m_handle, length);
+    m_output.setLength(length);
   }
 
   /**
@@ -64,7 +67,59 @@ public class AddressableLED implements AutoCloseable {
    * @param buffer the buffer to write
    */
   public void setData(AddressableLEDBuffer buffer) {
-    AddressableLEDJNI.setData(m_handle, buffer.m_buffer);
+    // the output stages only need to look at the LEDs written since the last frame
+    int dirtyStart = buffer.getDirtyStart();
+    int dirtyEnd = buffer.getDirtyEnd();
+    buffer.clearDirty();
+    if (buffer != m_lastBuffer) {
+      dirtyStart = 0;
+      dirtyEnd = buffer.getLength();
+      m_lastBuffer = buffer;
+    }
+
+    byte[] data = buffer.m_buffer;
+    if (m_colorCorrection != null) {
+      // correct a copy so the buffer keeps the colors the patterns wrote
+      if (m_correctedData.length != data.length) {
+        m_correctedData = new byte[data.length];
+        dirtyStart = 0;
+        dirtyEnd = data.length / 4;
+      }
+      if (dirtyStart < dirtyEnd) {
+        m_colorCorrection.apply(data, m_correctedData, dirtyStart, dirtyEnd - dirtyStart);
+      }
+      data = m_correctedData;
+    }
+
+    if (m_powerLimiter != null) {
+      data = m_powerLimiter.limit(data, dirtyStart, dirtyEnd);
+    }
+
+    // the stages still run for an output that wants the frames as written, so the limiter's
+    // readings are the same either way
+    m_output.setData(m_output.isBeforeOutputStages() ? buffer.m_buffer : data);
+  }
+
+  /**
+   * Sets the color correction applied to the LED output data. The correction is applied in a
+   * single pass over the data each time {@link #setData(AddressableLEDBuffer)} is called; the
+   * buffer itself is not modified.
+   *
+   * @param colorCorrection the color correction, or null for none
+   */
+  public void setColorCorrection(LEDColorCorrection colorCorrection) {
+    m_colorCorrection = colorCorrection;
+    m_lastBuffer = null; // the next frame has to be corrected in full
+  }
+
+  /**
+   * Sets the power limiter that dims the LED output data when it would draw too much current. The
+   * limiter sees the data after any color correction, since that is what the LEDs actually show.
+   *
+   * @param powerLimiter the power limiter, or null for none
+   */
+  public void setPowerLimiter(LEDPowerLimiter powerLimiter) {
+    m_powerLimiter = powerLimiter;
   }
 
   /**
@@ -82,8 +137,7 @@ public class AddressableLED implements AutoCloseable {
       int lowTime0NanoSeconds,
       int highTime1NanoSeconds,
       int lowTime1NanoSeconds) {
-    AddressableLEDJNI.setBitTiming(
-        m_handle,
+    m_output.setBitTiming(
         highTime0NanoSeconds,
         lowTime0NanoSeconds,
         highTime1NanoSeconds,
@@ -98,7 +152,7 @@ public class AddressableLED implements AutoCloseable {
    * @param syncTimeMicroSeconds the sync time (default 280us)
    */
   public void setSyncTime(int syncTimeMicroSeconds) {
-    AddressableLEDJNI.setSyncTime(m_handle, syncTimeMicroSeconds);
+    m_output.setSyncTime(syncTimeMicroSeconds);
   }
 
   /**
@@ -107,11 +161,11 @@ public class AddressableLED implements AutoCloseable {
    * <p>The output writes continuously.
    */
   public void start() {
-    AddressableLEDJNI.start(m_handle);
+    m_output.start();
   }
 
   /** Stops the output. */
   public void stop() {
-    AddressableLEDJNI.stop(m_handle);
+    m_output.stop();
   }
 }
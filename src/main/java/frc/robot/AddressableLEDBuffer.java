@@ -4,10 +4,24 @@
 
 package frc.robot;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
 /** Buffer storage for Addressable LEDs. */
 public class AddressableLEDBuffer implements LEDReader, LEDWriter {
+  // views the BGRx bytes as little-endian ints so a whole pixel is read or written at once
+  private static final VarHandle kPixels =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
   byte[] m_buffer;
 
+  // range of LEDs [start, end) written since the last clearDirty(), so output stages can work
+  // incrementally instead of rescanning the whole strip every loop
+  private int m_dirtyStart;
+  private int m_dirtyEnd;
+
   /**
    * Constructs a new LED buffer with the specified length.
    *
@@ -15,6 +29,8 @@ public class AddressableLEDBuffer implements LEDReader, LEDWriter {
    */
   public AddressableLEDBuffer(int length) {
     m_buffer = new byte[length * 4];
+    m_dirtyStart = 0;
+    m_dirtyEnd = length;
   }
 
   /**
@@ -27,10 +43,26 @@ public class AddressableLEDBuffer implements LEDReader, LEDWriter {
    */
   @Override
   public void setRGB(int index, int r, int g, int b) {
-    m_buffer[index * 4] = (byte) b;
-    m_buffer[(index * 4) + 1] = (byte) g;
-    m_buffer[(index * 4) + 2] = (byte) r;
-    m_buffer[(index * 4) + 3] = 0;
+    setPacked(index, Color.packRGB(r, g, b));
+  }
+
+  /**
+   * Sets a specific led in the buffer to a packed 32-bit RGB color. This is the cheapest way to
+   * write an LED, since the whole pixel is stored at once.
+   *
+   * @param index the index to write
+   * @param rgb the color, packed as by {@link Color#packRGB(int, int, int)}
+   */
+  public void setPacked(int index, int rgb) {
+    // read as a little-endian int, a BGRx pixel is 0x00RRGGBB; the x byte must stay 0
+    kPixels.set(m_buffer, index * 4, rgb & 0x00FFFFFF);
+
+    if (index < m_dirtyStart) {
+      m_dirtyStart = index;
+    }
+    if (index >= m_dirtyEnd) {
+      m_dirtyEnd = index + 1;
+    }
   }
 
   /**
@@ -76,6 +108,70 @@ public class AddressableLEDBuffer implements LEDReader, LEDWriter {
     return m_buffer[index * 4] & 0xFF;
   }
 
+  /**
+   * Gets the color at the specified index as a packed 32-bit RGB integer.
+   *
+   * @param index the index of the LED to read
+   * @return the color, packed as by {@link Color#packRGB(int, int, int)}
+   */
+  @Override
+  public int getPacked(int index) {
+    return (int) kPixels.get(m_buffer, index * 4) & 0x00FFFFFF;
+  }
+
+  /**
+   * Reads the colors of a run of LEDs into an array as packed 32-bit RGB integers.
+   *
+   * @param start the index of the first LED to read
+   * @param dst the array to read the colors into, packed as by {@link Color#packRGB(int, int, int)}
+   * @param offset the position in {@code dst} for the color of the first LED
+   * @param length the number of LEDs to read
+   */
+  @Override
+  public void readPacked(int start, int[] dst, int offset, int length) {
+    Objects.checkFromIndexSize(start, length, getLength());
+    Objects.checkFromIndexSize(offset, length, dst.length);
+    for (int led = 0, i = start * 4; led < length; led++, i += 4) {
+      dst[offset + led] = (int) kPixels.get(m_buffer, i) & 0x00FFFFFF;
+    }
+  }
+
+  /**
+   * Records that a range of LEDs was written without going through {@link #setRGB(int, int, int,
+   * int)}, such as by {@link LEDBulkOps}.
+   *
+   * @param start the index of the first LED written
+   * @param length the number of LEDs written
+   */
+  void markDirty(int start, int length) {
+    m_dirtyStart = Math.min(m_dirtyStart, start);
+    m_dirtyEnd = Math.max(m_dirtyEnd, start + length);
+  }
+
+  /**
+   * Gets the index of the first LED written since the last {@link #clearDirty()}.
+   *
+   * @return the first written index; not less than {@link #getDirtyEnd()} if nothing was written
+   */
+  int getDirtyStart() {
+    return m_dirtyStart;
+  }
+
+  /**
+   * Gets the index after the last LED written since the last {@link #clearDirty()}.
+   *
+   * @return the index after the last written LED
+   */
+  int getDirtyEnd() {
+    return m_dirtyEnd;
+  }
+
+  /** Forgets which LEDs have been written, after an output stage has caught up with them. */
+  void clearDirty() {
+    m_dirtyStart = getLength();
+    m_dirtyEnd = 0;
+  }
+
   /**
    * Creates a view of a subsection of this data buffer, starting from (and including) {@code
    * startingIndex} and ending on (and including) {@code endingIndex}. Views cannot be written
@@ -6,6 +6,8 @@ package frc.robot;
 
 import static edu.wpi.first.util.ErrorMessages.requireNonNullParam;
 
+import java.util.Objects;
+
 // import edu.wpi.first.wpilibj.util.Color;
 // import edu.wpi.first.wpilibj.util.Color8Bit;
 
@@ -119,6 +121,33 @@ public class AddressableLEDBufferView implements LEDReader, LEDWriter {
     return m_backingReader.getBlue(nativeIndex(index));
   }
 
+  @Override
+  public int getPacked(int index) {
+    return m_backingReader.getPacked(nativeIndex(index));
+  }
+
+  @Override
+  public void readPacked(int start, int[] dst, int offset, int length) {
+    Objects.checkFromIndexSize(start, length, m_length);
+    Objects.checkFromIndexSize(offset, length, dst.length);
+    if (length == 0) {
+      return;
+    }
+    if (!isReversed()) {
+      // the run is contiguous in the backing buffer too, so read it in one go
+      m_backingReader.readPacked(nativeIndex(start), dst, offset, length);
+      return;
+    }
+
+    // read the run front-to-back from the backing buffer, then flip it into view order
+    m_backingReader.readPacked(nativeIndex(start + length - 1), dst, offset, length);
+    for (int lo = offset, hi = offset + length - 1; lo < hi; lo++, hi--) {
+      int swap = dst[lo];
+      dst[lo] = dst[hi];
+      dst[hi] = swap;
+    }
+  }
+
   /**
    * Checks if this view is reversed with respect to its backing buffer.
    *
@@ -128,6 +157,37 @@ public class AddressableLEDBufferView implements LEDReader, LEDWriter {
     return m_endingIndex < m_startingIndex;
   }
 
+  /**
+   * Finds the buffer this view maps onto as a single front-to-back run of pixels, for use by {@link
+   * LEDBulkOps}.
+   *
+   * @return the backing buffer, or null if this view is reversed or isn't backed by one buffer
+   */
+  AddressableLEDBuffer contiguousBuffer() {
+    if (isReversed() || m_backingReader != m_backingWriter) {
+      return null;
+    }
+    if (m_backingReader instanceof AddressableLEDBuffer buffer) {
+      return buffer;
+    }
+    if (m_backingReader instanceof AddressableLEDBufferView view) {
+      return view.contiguousBuffer();
+    }
+    return null;
+  }
+
+  /**
+   * Gets the index of this view's first LED in the buffer returned by {@link #contiguousBuffer()}.
+   *
+   * @return the index of the first LED in the backing buffer
+   */
+  int contiguousStart() {
+    if (m_backingReader instanceof AddressableLEDBufferView view) {
+      return view.contiguousStart() + m_startingIndex;
+    }
+    return m_startingIndex;
+  }
+
   /**
    * Converts a view-local index in the range [start, end] to a global index in the range [0,
    * length].
@@ -333,6 +333,74 @@ public class Color {
         (int) MathUtil.interpolate(b1, b2, t));
   }
 
+  /*
+   * Fixed-point color math
+   *
+   * Integer versions of the interpolation and brightness helpers above, for use in patterns that
+   * run per LED every loop. Fractions are fixed-point with kFixedPointShift fractional bits, so
+   * kFixedPointOne represents 1.0.
+   */
+
+  /** Number of fractional bits in fixed-point interpolation values and multipliers. */
+  public static final int kFixedPointShift = 8;
+
+  /** The fixed-point representation of 1.0. */
+  public static final int kFixedPointOne = 1 << kFixedPointShift;
+
+  private static final byte[][] s_brightnessTables = new byte[kFixedPointOne + 1][];
+
+  /**
+   * Converts a fraction to its fixed-point representation.
+   *
+   * @param value the value to convert
+   * @return the nearest fixed-point value
+   */
+  public static int toFixedPoint(double value) {
+    return (int) Math.round(value * kFixedPointOne);
+  }
+
+  /**
+   * Linearly interpolates between two RGB colors using only integer math. Equivalent to {@link
+   * #lerpRGB(int, int, int, int, int, int, double)} but with a fixed-point interpolation value.
+   *
+   * @param r1 the red value of the first color, in [0, 255]
+   * @param g1 the green value of the first color, in [0, 255]
+   * @param b1 the blue value of the first color, in [0, 255]
+   * @param r2 the red value of the second color, in [0, 255]
+   * @param g2 the green value of the second color, in [0, 255]
+   * @param b2 the blue value of the second color, in [0, 255]
+   * @param t the fixed-point interpolation value, in [0, {@link #kFixedPointOne}]
+   * @return the interpolated color, packed in a 32-bit integer
+   */
+  public static int lerpRGBFixed(int r1, int g1, int b1, int r2, int g2, int b2, int t) {
+    return packRGB(
+        r1 + (((r2 - r1) * t) >> kFixedPointShift),
+        g1 + (((g2 - g1) * t) >> kFixedPointShift),
+        b1 + (((b2 - b1) * t) >> kFixedPointShift));
+  }
+
+  /**
+   * Gets a lookup table that dims a channel value to a brightness level. Entry {@code c} of the
+   * table is {@code c * level / kFixedPointOne}, so dimming a channel is a single array lookup. The
+   * tables are built the first time each level is requested and are shared; do not modify them.
+   *
+   * @param level the fixed-point brightness, in [0, {@link #kFixedPointOne}]; values outside that
+   *     range are clamped
+   * @return a 256-entry table of unsigned channel values
+   */
+  public static byte[] brightnessTable(int level) {
+    int clamped = MathUtil.clamp(level, 0, kFixedPointOne);
+    byte[] table = s_brightnessTables[clamped];
+    if (table == null) {
+      table = new byte[256];
+      for (int c = 0; c < 256; c++) {
+        table[c] = (byte) ((c * clamped) >> kFixedPointShift);
+      }
+      s_brightnessTables[clamped] = table;
+    }
+    return table;
+  }
+
   /*
    * FIRST Colors
    */
@@ -0,0 +1,231 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Decides which executes of a command to log, since logging every execute of every command floods
+ * the log. Each sampler logs the executes of each run of a command (from initialize to finish or
+ * interrupt) one of four ways:
+ *
+ * <ul>
+ *   <li>{@link #firstOnly()}: only the first execute
+ *   <li>{@link #everyNth(int)}: the first execute and every Nth after it
+ *   <li>{@link #decimated(double)}: at most a set number of executes per second
+ *   <li>{@link #reservoir(int)}: a set number of executes chosen at random from the whole run, each
+ *       as likely as any other, logged when the run ends
+ * </ul>
+ *
+ * <p>The decision for an execute takes constant time and doesn't allocate, so a sampler can be
+ * left on in matches. A sampler keeps its state for each run in a {@link Run}, which the caller
+ * keeps for the command and resets when the command initializes.
+ */
+public final class CommandExecuteSampler {
+  private enum Mode {
+    kFirstOnly,
+    kEveryNth,
+    kDecimated,
+    kReservoir
+  }
+
+  private final Mode m_mode;
+  // executes apart for kEveryNth, microseconds apart for kDecimated, size for kReservoir
+  private final long m_every;
+  private long m_random = 4237; // xorshift state for kReservoir
+
+  /** The executes of one run of a command, as far as sampling them needs. */
+  public static final class Run {
+    private long m_executes;
+    private long m_nextLogMicros;
+    private int m_sampleCount;
+    private long[] m_sampleExecutes = new long[0];
+    private long[] m_sampleTimes = new long[0];
+
+    /** Starts a new run, when the command initializes. */
+    public void reset() {
+      m_executes = 0;
+      m_nextLogMicros = Long.MIN_VALUE;
+      m_sampleCount = 0;
+    }
+
+    /**
+     * Gets how many times the command has executed in this run.
+     *
+     * @return the number of executes
+     */
+    public long getExecutes() {
+      return m_executes;
+    }
+
+    /**
+     * Gets how many executes a reservoir sampler chose in this run.
+     *
+     * @return the number of samples
+     */
+    public int getSampleCount() {
+      return m_sampleCount;
+    }
+
+    /**
+     * Gets which execute of the run a sample is. The samples are in no particular order until
+     * {@link #sortSamples()}.
+     *
+     * @param sample the index of the sample
+     * @return the execute, numbered from 1
+     */
+    public long getSampleExecute(int sample) {
+      return m_sampleExecutes[sample];
+    }
+
+    /**
+     * Gets when a sampled execute happened.
+     *
+     * @param sample the index of the sample
+     * @return the time from {@link edu.wpi.first.util.WPIUtilJNI#now()}, in microseconds
+     */
+    public long getSampleTime(int sample) {
+      return m_sampleTimes[sample];
+    }
+
+    /** Puts the samples in the order their executes happened, to log them at the end of a run. */
+    public void sortSamples() {
+      // an insertion sort; reservoirs are small
+      for (int i = 1; i < m_sampleCount; i++) {
+        long execute = m_sampleExecutes[i];
+        long time = m_sampleTimes[i];
+        int j = i - 1;
+        for (; j >= 0 && m_sampleExecutes[j] > execute; j--) {
+          m_sampleExecutes[j + 1] = m_sampleExecutes[j];
+          m_sampleTimes[j + 1] = m_sampleTimes[j];
+        }
+        m_sampleExecutes[j + 1] = execute;
+        m_sampleTimes[j + 1] = time;
+      }
+    }
+  }
+
+  private CommandExecuteSampler(Mode mode, long every) {
+    m_mode = mode;
+    m_every = every;
+  }
+
+  /**
+   * Creates a sampler that logs only the first execute of each run.
+   *
+   * @return the sampler
+   */
+  public static CommandExecuteSampler firstOnly() {
+    return new CommandExecuteSampler(Mode.kFirstOnly, 0);
+  }
+
+  /**
+   * Creates a sampler that logs the first execute of each run and every Nth after it.
+   *
+   * @param n how many executes apart the logged executes are; 1 logs every execute
+   * @return the sampler
+   */
+  public static CommandExecuteSampler everyNth(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("N must be positive, got " + n);
+    }
+    return new CommandExecuteSampler(Mode.kEveryNth, n);
+  }
+
+  /**
+   * Creates a sampler that logs the first execute of each run, then the first execute after each
+   * period of 1 / {@code hertz} seconds, so no command logs more than {@code hertz} executes per
+   * second.
+   *
+   * @param hertz the most executes of a command to log per second
+   * @return the sampler
+   */
+  public static CommandExecuteSampler decimated(double hertz) {
+    if (!(hertz > 0)) {
+      throw new IllegalArgumentException("Rate must be positive, got " + hertz);
+    }
+    return new CommandExecuteSampler(Mode.kDecimated, Math.max(1, Math.round(1e6 / hertz)));
+  }
+
+  /**
+   * Creates a sampler that chooses a fixed number of executes of each run at random, each as likely
+   * as any other, however long the run. None are logged as they happen: log the {@link Run}'s
+   * samples when the command ends.
+   *
+   * @param size the most executes to choose from each run
+   * @return the sampler
+   */
+  public static CommandExecuteSampler reservoir(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Size must be positive, got " + size);
+    }
+    return new CommandExecuteSampler(Mode.kReservoir, size);
+  }
+
+  /**
+   * Gets whether this sampler chooses its executes at random and leaves them in the {@link Run}
+   * to be logged when the command ends.
+   *
+   * @return true for a reservoir sampler
+   */
+  public boolean isReservoir() {
+    return m_mode == Mode.kReservoir;
+  }
+
+  /**
+   * Counts an execute of a command and decides whether to log it now.
+   *
+   * @param run the command's current run
+   * @param nowMicros the time of the execute, in microseconds
+   * @return true to log the execute now
+   */
+  public boolean sample(Run run, long nowMicros) {
+    long execute = ++run.m_executes;
+    return switch (m_mode) {
+      case kFirstOnly -> execute == 1;
+      case kEveryNth -> (execute - 1) % m_every == 0;
+      case kDecimated -> decimate(run, nowMicros);
+      case kReservoir -> keepInReservoir(run, execute, nowMicros);
+    };
+  }
+
+  private boolean decimate(Run run, long nowMicros) {
+    if (nowMicros < run.m_nextLogMicros) {
+      return false;
+    }
+    run.m_nextLogMicros = nowMicros + m_every;
+    return true;
+  }
+
+  private boolean keepInReservoir(Run run, long execute, long nowMicros) {
+    if (run.m_sampleExecutes.length != m_every) {
+      // first use of this run with this size of reservoir
+      run.m_sampleExecutes = new long[(int) m_every];
+      run.m_sampleTimes = new long[(int) m_every];
+      run.m_sampleCount = 0;
+    }
+
+    // keep the first executes, then replace one at random with falling probability, so every
+    // execute so far is equally likely to be in the reservoir
+    int slot;
+    if (run.m_sampleCount < m_every) {
+      slot = run.m_sampleCount++;
+    } else {
+      long pick = (nextRandom() >>> 1) % execute;
+      if (pick >= m_every) {
+        return false;
+      }
+      slot = (int) pick;
+    }
+    run.m_sampleExecutes[slot] = execute;
+    run.m_sampleTimes[slot] = nowMicros;
+    return false; // logged with the rest of the reservoir when the run ends
+  }
+
+  private long nextRandom() {
+    m_random ^= m_random << 13;
+    m_random ^= m_random >>> 7;
+    m_random ^= m_random << 17;
+    return m_random;
+  }
+}
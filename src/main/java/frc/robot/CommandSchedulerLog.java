@@ -1,18 +1,22 @@
 package frc.robot;
 
+import edu.wpi.first.networktables.IntegerPublisher;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
 import edu.wpi.first.networktables.StringEntry;
+import edu.wpi.first.util.WPIUtilJNI;
 import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.shuffleboard.EventImportance;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
 import java.lang.invoke.MethodHandles;
-import java.util.HashMap;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
-public class CommandSchedulerLog 
+public class CommandSchedulerLog implements AutoCloseable
 {
     private static final String m_fullClassName = MethodHandles.lookup().lookupClass().getCanonicalName();
     static
@@ -20,15 +24,26 @@ public class CommandSchedulerLog
         System.out.println("Loading: " + m_fullClassName);
     }
 
-    private final HashMap<String, Integer> m_currentCommands = new HashMap<String, Integer>();
+    // bounded - commands named on the fly (FSM states and colors) would grow a map forever
+    private static final int kMaxCommands = 128;
+    private final CommandStatsTable m_currentCommands = new CommandStatsTable(kMaxCommands);
+    private final WeakHashMap<Command, CommandKey> m_keys = new WeakHashMap<Command, CommandKey>();
+    private CommandExecuteSampler m_executeSampler = CommandExecuteSampler.firstOnly();
+    private LoopAllocationMonitor.Phase m_schedulerPhase; // null unless measuring allocations
+    private LoopAllocationMonitor.Phase m_logPhase;
     private final NetworkTable m_nt;    
+    private final NetworkTablesLogger m_ntLogger; // null unless logging to the DataLog
     private final StringEntry m_initializeCommandLogEntry;
     private final StringEntry m_interruptCommandLogEntry;
     private final StringEntry m_finishCommandLogEntry;
     private final StringEntry m_executeCommandLogEntry;
+    private final IntegerPublisher m_executeNumberPublisher;
+    private final IntegerPublisher m_executeTimePublisher;
+    private final IntegerPublisher m_evictionsPublisher;
     private final boolean m_useConsole;
     private final boolean m_useDataLog;
     private final boolean m_useShuffleBoardLog;
+    private volatile boolean m_closed;
 
     /**
      * Command Event Loggers
@@ -40,10 +55,21 @@ public class CommandSchedulerLog
      * <p>If ShuffleBoard is recording (start it manually), these events are added to the recording.
      * Convert recording to csv and they show nicely in Excel.
      * 
-     * <p>If using DataLog tool, the recording is via NT so tell NT to send EVERYTHING to the DataLog.
+     * <p>If using DataLog tool, the recording is via NT but only the command topics are sent to the
+     * DataLog, not EVERYTHING in NT. Call runAfterCommands() periodically to record them.
      * Run DataLog tool to retrieve log from roboRIO and convert the log to csv.
      * 
-     * <p>Note the comment in execute logging that only the first execute is logged unless changed.
+     * <p>A logged execute is three values set together: the command on "execute", which execute of
+     * its run it was on "executeNumber" and when it ran, in microseconds, on "executeTime". They are
+     * all set at the time they are logged - NT drops a value older than the last one on its topic,
+     * and executes sampled from a reservoir are only logged when their command ends.
+     * 
+     * <p>Note the comment in execute logging that only the first execute is logged unless changed
+     * by setExecuteSampler().
+     * 
+     * <p>The command scheduler keeps its callbacks for good, so close() the log when done with it,
+     * as a robot created more than once in the same JVM for simulation is; its callbacks then do
+     * nothing.
      */ 
     CommandSchedulerLog(boolean useConsole, boolean useDataLog, boolean useShuffleBoardLog)
     {
@@ -51,17 +77,90 @@ public class CommandSchedulerLog
         m_useDataLog = useDataLog;
         m_useShuffleBoardLog = useShuffleBoardLog;
 
-        // DataLog via NT so establish NT and the connection to DataLog
+        final String networkTableName = "Team4237";
+
+        // DataLog via NT so establish NT and the connection to DataLog for only the command topics
         if (useDataLog) {
-            DataLogManager.logNetworkTables(true); // WARNING - this puts all NT to the DataLog
+            DataLogManager.logNetworkTables(false); // all NT to the DataLog is too much I/O
+            m_ntLogger = new NetworkTablesLogger(NetworkTableInstance.getDefault(), DataLogManager.getLog())
+                .allow("/" + networkTableName + "/Commands/");
+        }
+        else {
+            m_ntLogger = null;
         }
 
-        final String networkTableName = "Team4237";
         m_nt = NetworkTableInstance.getDefault().getTable(networkTableName);
         m_initializeCommandLogEntry = m_nt.getStringTopic("Commands/initialize").getEntry("");
         m_interruptCommandLogEntry = m_nt.getStringTopic("Commands/interrupt").getEntry("");
         m_finishCommandLogEntry = m_nt.getStringTopic("Commands/finish").getEntry("");
-        m_executeCommandLogEntry = m_nt.getStringTopic("Commands/execute").getEntry("");        
+        // a command's executes are logged one after another with the same name, and the first
+        // only sampler logs the same number each run, so keep the duplicates
+        m_executeCommandLogEntry = m_nt.getStringTopic("Commands/execute")
+            .getEntry("", PubSubOption.keepDuplicates(true));
+        m_executeNumberPublisher = m_nt.getIntegerTopic("Commands/executeNumber")
+            .publish(PubSubOption.keepDuplicates(true));
+        m_executeTimePublisher = m_nt.getIntegerTopic("Commands/executeTime").publish();
+        m_evictionsPublisher = m_nt.getIntegerTopic("Commands/evictions").publish();
+    }
+
+    /**
+     * Publish how many commands were evicted from the table of executes and record the command
+     * topics that changed to the DataLog.
+     * 
+     * <p>Run periodically after commands are run.
+     */
+    public void runAfterCommands()
+    {
+        m_evictionsPublisher.set(m_currentCommands.getEvictionCount());
+
+        if (m_ntLogger != null) {
+            m_ntLogger.poll();
+        }
+    }
+
+    /**
+     * Get how many commands were dropped from the table of executes to make room for others. A
+     * command dropped while running logs a short count of runs when it ends.
+     * 
+     * @return number of commands evicted
+     */
+    public long getEvictionCount()
+    {
+        return m_currentCommands.getEvictionCount();
+    }
+
+    /**
+     * Get how many executes the commands dropped from the table of executes had counted.
+     * 
+     * @return number of executes lost from the counts logged at command end
+     */
+    public long getEvictedExecutes()
+    {
+        return m_currentCommands.getEvictedExecutes();
+    }
+
+    /**
+     * Count the garbage made by the logging that runs within the command scheduler run to this
+     * logger instead of to the scheduler.
+     * 
+     * @param monitor measures the garbage made in each part of the loop; its "Scheduler" phase must
+     *     end after the scheduler runs
+     */
+    public void measureAllocations(LoopAllocationMonitor monitor)
+    {
+        m_schedulerPhase = monitor.addPhase("Scheduler");
+        m_logPhase = monitor.addPhase("CommandSchedulerLog");
+    }
+
+    /**
+     * Choose which executes are logged; this can be changed at any time, say from a dashboard.
+     * 
+     * @param sampler how to choose the executes to log - first only, every Nth, at most X Hz per
+     *     command, or a random reservoir logged when the command ends
+     */
+    public void setExecuteSampler(CommandExecuteSampler sampler)
+    {
+        m_executeSampler = sampler;
     }
 
     /**
@@ -72,7 +171,12 @@ public class CommandSchedulerLog
         CommandScheduler.getInstance().onCommandInitialize(
             (command) -> 
             {
-                String key = command.getClass().getSimpleName() + "/" + command.getName();
+                if (m_closed) {
+                    return;
+                }
+                beginLogging();
+
+                String key = keyOf(command);
                 String requirements = command.getRequirements().stream()
                     .map(subsystem -> subsystem.getClass().getSimpleName())
                     .collect(Collectors.joining(", ", "{", "}"));
@@ -88,7 +192,9 @@ public class CommandSchedulerLog
                         key + " " + requirements, EventImportance.kNormal);                    
                 }
 
-                m_currentCommands.put(key, 0);
+                runOf(key).reset();
+
+                endLogging();
             }
         );
     }
@@ -101,8 +207,15 @@ public class CommandSchedulerLog
         CommandScheduler.getInstance().onCommandInterrupt(
             (command) ->
             {
-                String key = command.getClass().getSimpleName() + "/" + command.getName();
-                String runs = " after " + m_currentCommands.getOrDefault(key, 0) + " runs";
+                if (m_closed) {
+                    return;
+                }
+                beginLogging();
+
+                String key = keyOf(command);
+                CommandExecuteSampler.Run run = runOf(key);
+                String runs = " after " + run.getExecutes() + " runs";
+                logSampledExecutes(key, run);
 
                 if(m_useConsole) {
                     System.out.println("Command interrupted : " + key + runs);                    
@@ -114,7 +227,9 @@ public class CommandSchedulerLog
                     Shuffleboard.addEventMarker("Command interrupted", key, EventImportance.kNormal);
                 }
 
-                m_currentCommands.put(key, 0);
+                run.reset();
+
+                endLogging();
             }
         );
     }
@@ -127,8 +242,15 @@ public class CommandSchedulerLog
         CommandScheduler.getInstance().onCommandFinish(
             (command) ->
             {
-                String key = command.getClass().getSimpleName() + "/" + command.getName();
-                String runs = " after " + m_currentCommands.getOrDefault(key, 0) + " runs";
+                if (m_closed) {
+                    return;
+                }
+                beginLogging();
+
+                String key = keyOf(command);
+                CommandExecuteSampler.Run run = runOf(key);
+                String runs = " after " + run.getExecutes() + " runs";
+                logSampledExecutes(key, run);
 
                 if(m_useConsole) {
                     System.out.println("Command finished : " + key + runs);                    
@@ -140,7 +262,9 @@ public class CommandSchedulerLog
                     Shuffleboard.addEventMarker("Command finished", key, EventImportance.kNormal);                    
                 }
 
-                m_currentCommands.put(key, 0);
+                run.reset();
+
+                endLogging();
             }
         );
     }
@@ -148,36 +272,156 @@ public class CommandSchedulerLog
     /**
      * Log commands that run the execute() method.
      * 
-     * <p>This can generate a lot of events so logging is suppressed except for the first
-     * occurrence of execute(). Total count of execute() is logged at command end.
+     * <p>This can generate a lot of events so logging is suppressed except for the executes chosen
+     * by the execute sampler - by default only the first occurrence of execute(). Total count of
+     * execute() is logged at command end.
      * 
-     * <p>Recompile without the if/else to get all execute() logged.
+     * <p>Change the sampler with setExecuteSampler() to log more executes; no need to recompile.
+     * Choosing an execute to log takes the same short time for every mode and creates no garbage.
      */
     public void logCommandExecute()
     {
         CommandScheduler.getInstance().onCommandExecute(
             (command) ->
             {
-                String key = command.getClass().getSimpleName() + "/" + command.getName();
+                if (m_closed) {
+                    return;
+                }
+                beginLogging();
+
+                String key = keyOf(command);
+                CommandExecuteSampler.Run run = runOf(key);
+                long now = WPIUtilJNI.now();
 
-                if(m_currentCommands.getOrDefault(key, 0) == 0) // suppress all but first execute
+                if(m_executeSampler.sample(run, now))
                 {
-                    if(m_useConsole) {
-                        System.out.println("Command executed : " + key);                        
-                    }
-                    if(m_useDataLog) {
-                        m_executeCommandLogEntry.set(key);             
-                    }
-                    if(m_useShuffleBoardLog) {
-                        Shuffleboard.addEventMarker("Command executed", key, EventImportance.kNormal);                        
-                    }
-
-                    m_currentCommands.put(key, 1); // first time through count is 1
+                    logExecute(key, run.getExecutes(), now);
                 }
-                else
-                    // Increment total count to log when the command ends.
-                    m_currentCommands.put(key, m_currentCommands.get(key) + 1);
+
+                endLogging();
             }
         );
     }
+
+    /**
+     * Stop logging - the callbacks given to the command scheduler do nothing from now on, as the
+     * scheduler can't remove them - and stop publishing the command topics.
+     */
+    @Override
+    public void close()
+    {
+        m_closed = true;
+        if (m_ntLogger != null) {
+            m_ntLogger.close();
+        }
+        m_initializeCommandLogEntry.close();
+        m_interruptCommandLogEntry.close();
+        m_finishCommandLogEntry.close();
+        m_executeCommandLogEntry.close();
+        m_executeNumberPublisher.close();
+        m_executeTimePublisher.close();
+        m_evictionsPublisher.close();
+    }
+
+    /**
+     * Count the garbage made by the scheduler until now to the scheduler.
+     */
+    private void beginLogging()
+    {
+        if (m_schedulerPhase != null) {
+            m_schedulerPhase.end();
+        }
+    }
+
+    /**
+     * Count the garbage made since beginLogging() to this logger.
+     */
+    private void endLogging()
+    {
+        if (m_logPhase != null) {
+            m_logPhase.end();
+        }
+    }
+
+    /**
+     * Log the executes a reservoir sampler chose from a command's run that has ended.
+     * 
+     * @param key command logging name
+     * @param run the run that ended
+     */
+    private void logSampledExecutes(String key, CommandExecuteSampler.Run run)
+    {
+        run.sortSamples();
+        for (int sample = 0; sample < run.getSampleCount(); sample++) {
+            logExecute(key, run.getSampleExecute(sample), run.getSampleTime(sample));
+        }
+    }
+
+    /**
+     * Log an execute.
+     * 
+     * @param key command logging name
+     * @param execute which execute of the run it was, numbered from 1
+     * @param time when the execute ran, microseconds
+     */
+    private void logExecute(String key, long execute, long time)
+    {
+        if(m_useConsole) {
+            System.out.println("Command executed : " + key + " #" + execute);
+        }
+        if(m_useDataLog) {
+            // the key is kept from loop to loop, so this makes no garbage
+            m_executeCommandLogEntry.set(key);
+            m_executeNumberPublisher.set(execute);
+            m_executeTimePublisher.set(time);
+        }
+        if(m_useShuffleBoardLog) {
+            Shuffleboard.addEventMarker("Command executed", key + " #" + execute,
+                EventImportance.kNormal);
+        }
+    }
+
+    /**
+     * A command's logging name, and the command name it was built from.
+     */
+    private static final class CommandKey
+    {
+        private String m_name;
+        private String m_key;
+    }
+
+    /**
+     * Get the logging name of a command - its class and name - without building it every loop.
+     * 
+     * <p>The logging name is built again if the command has been renamed since, with setName or
+     * withName, so a renamed command is logged, counted and sampled under its new name.
+     * 
+     * @param command the command
+     * @return command logging name
+     */
+    private String keyOf(Command command)
+    {
+        String name = command.getName();
+        CommandKey key = m_keys.get(command);
+        if (key == null) {
+            key = new CommandKey();
+            m_keys.put(command, key);
+        }
+        if (!name.equals(key.m_name)) {
+            key.m_name = name;
+            key.m_key = command.getClass().getSimpleName() + "/" + name;
+        }
+        return key.m_key;
+    }
+
+    /**
+     * Get the state of the current run of a command for counting and sampling its executes.
+     * 
+     * @param key command logging name
+     * @return the current run, a new one if the command isn't in the table
+     */
+    private CommandExecuteSampler.Run runOf(String key)
+    {
+        return m_currentCommands.get(key);
+    }
 }
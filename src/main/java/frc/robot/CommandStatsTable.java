@@ -0,0 +1,170 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * The executes of the current run of each command, for {@link CommandSchedulerLog}, in a table of
+ * fixed size. Commands named on the fly (such as one per state and color of a state machine) would
+ * otherwise add entries forever; here, once the table is full, a new command takes the place of one
+ * that hasn't run lately, so memory use stays flat however long the robot runs.
+ *
+ * <p>The table is open addressing with linear probing, and picks the entry to evict with the clock
+ * algorithm: every lookup marks its entry as used, and a hand sweeps the table clearing the marks
+ * until it finds an entry that wasn't used since the hand last passed it. A running command is
+ * looked up every loop, so it keeps its entry unless the table is full of running commands. The
+ * evicted entry's {@link CommandExecuteSampler.Run} is reused for the new command.
+ */
+final class CommandStatsTable {
+  private final int m_capacity;
+  private final int m_mask;
+  private final String[] m_keys;
+  private final int[] m_hashes;
+  private final CommandExecuteSampler.Run[] m_runs;
+  private final boolean[] m_used;
+  private int m_size;
+  private int m_hand;
+  private long m_evictionCount;
+  private long m_evictedExecutes;
+
+  /**
+   * Creates an empty table.
+   *
+   * @param capacity the most commands the table holds
+   */
+  CommandStatsTable(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+    }
+    m_capacity = capacity;
+    // at most half full, so probes stay short
+    int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+    m_mask = slots - 1;
+    m_keys = new String[slots];
+    m_hashes = new int[slots];
+    m_runs = new CommandExecuteSampler.Run[slots];
+    m_used = new boolean[slots];
+  }
+
+  /**
+   * Gets the current run of a command, adding the command if it isn't in the table. A new entry's
+   * run is reset, as if the command had just initialized.
+   *
+   * @param key the command's logging name
+   * @return the run
+   */
+  CommandExecuteSampler.Run get(String key) {
+    int hash = spread(key.hashCode());
+    int slot = hash & m_mask;
+    for (String k; (k = m_keys[slot]) != null; slot = (slot + 1) & m_mask) {
+      if (k == key || (m_hashes[slot] == hash && k.equals(key))) {
+        m_used[slot] = true;
+        return m_runs[slot];
+      }
+    }
+
+    CommandExecuteSampler.Run run;
+    if (m_size == m_capacity) {
+      run = evict();
+      // the eviction may have shifted entries into the free slot found above
+      slot = hash & m_mask;
+      while (m_keys[slot] != null) {
+        slot = (slot + 1) & m_mask;
+      }
+    } else {
+      run = new CommandExecuteSampler.Run();
+    }
+    run.reset();
+    m_keys[slot] = key;
+    m_hashes[slot] = hash;
+    m_runs[slot] = run;
+    m_used[slot] = true;
+    m_size++;
+    return run;
+  }
+
+  /**
+   * Gets how many commands are in the table.
+   *
+   * @return the number of commands
+   */
+  int size() {
+    return m_size;
+  }
+
+  /**
+   * Gets the most commands the table holds.
+   *
+   * @return the capacity
+   */
+  int getCapacity() {
+    return m_capacity;
+  }
+
+  /**
+   * Gets how many commands were evicted to make room for others.
+   *
+   * @return the number of evictions
+   */
+  long getEvictionCount() {
+    return m_evictionCount;
+  }
+
+  /**
+   * Gets how many executes the evicted commands had in their runs when evicted, which were lost
+   * from the counts logged when those runs end.
+   *
+   * @return the number of executes
+   */
+  long getEvictedExecutes() {
+    return m_evictedExecutes;
+  }
+
+  /**
+   * Removes the entry the clock hand picks.
+   *
+   * @return the removed entry's run, to reuse
+   */
+  private CommandExecuteSampler.Run evict() {
+    while (m_keys[m_hand] == null || m_used[m_hand]) {
+      m_used[m_hand] = false;
+      m_hand = (m_hand + 1) & m_mask;
+    }
+
+    CommandExecuteSampler.Run run = m_runs[m_hand];
+    m_evictionCount++;
+    m_evictedExecutes += run.getExecutes();
+    remove(m_hand);
+    return run;
+  }
+
+  /**
+   * Removes an entry, shifting back the entries after it that probed past it, so lookups never
+   * stop short at the hole it leaves.
+   *
+   * @param slot the entry's slot
+   */
+  private void remove(int slot) {
+    int hole = slot;
+    for (int next = (hole + 1) & m_mask; m_keys[next] != null; next = (next + 1) & m_mask) {
+      int home = m_hashes[next] & m_mask;
+      // move the entry back unless its home is cyclically in (hole, next]
+      if (((next - home) & m_mask) >= ((next - hole) & m_mask)) {
+        m_keys[hole] = m_keys[next];
+        m_hashes[hole] = m_hashes[next];
+        m_runs[hole] = m_runs[next];
+        m_used[hole] = m_used[next];
+        hole = next;
+      }
+    }
+    m_keys[hole] = null;
+    m_runs[hole] = null;
+    m_used[hole] = false;
+    m_size--;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.hal.AddressableLEDJNI;
+import edu.wpi.first.hal.FRCNetComm.tResourceType;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.PWMJNI;
+
+/** The roboRIO's LED driver, through the HAL. See {@link LEDOutput#hal(int)}. */
+final class HALLEDOutput implements LEDOutput {
+  private final int m_pwmHandle;
+  private final int m_handle;
+
+  /**
+   * Constructs a new driver for a specific port.
+   *
+   * @param port the output port to use (Must be a PWM header, not on MXP)
+   */
+  HALLEDOutput(int port) {
+    m_pwmHandle = PWMJNI.initializePWMPort(HAL.getPort((byte) port));
+    m_handle = AddressableLEDJNI.initialize(m_pwmHandle);
+    HAL.report(tResourceType.kResourceType_AddressableLEDs, port + 1);
+  }
+
+  @Override
+  public void close() {
+    if (m_handle != 0) {
+      AddressableLEDJNI.free(m_handle);
+    }
+    if (m_pwmHandle != 0) {
+      PWMJNI.freePWMPort(m_pwmHandle);
+    }
+  }
+
+  @Override
+  public void setLength(int length) {
+    AddressableLEDJNI.setLength(m_handle, length);
+  }
+
+  @Override
+  public void setData(byte[] data) {
+    AddressableLEDJNI.setData(m_handle, data);
+  }
+
+  @Override
+  public void setBitTiming(
+      int highTime0NanoSeconds,
+      int lowTime0NanoSeconds,
+      int highTime1NanoSeconds,
+      int lowTime1NanoSeconds) {
+    AddressableLEDJNI.setBitTiming(
+        m_handle,
+        highTime0NanoSeconds,
+        lowTime0NanoSeconds,
+        highTime1NanoSeconds,
+        lowTime1NanoSeconds);
+  }
+
+  @Override
+  public void setSyncTime(int syncTimeMicroSeconds) {
+    AddressableLEDJNI.setSyncTime(m_handle, syncTimeMicroSeconds);
+  }
+
+  @Override
+  public void start() {
+    AddressableLEDJNI.start(m_handle);
+  }
+
+  @Override
+  public void stop() {
+    AddressableLEDJNI.stop(m_handle);
+  }
+}
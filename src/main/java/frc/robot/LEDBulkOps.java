@@ -0,0 +1,538 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.units.collections.LongToObjectHashMap;
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Bulk per-channel operations over the raw BGRx data of an {@link AddressableLEDBuffer}. Each
+ * operation makes a single pass over a contiguous run of pixels instead of going through the {@link
+ * LEDReader} and {@link LEDWriter} interfaces one channel at a time.
+ *
+ * <p>Operations are available on buffers and on raw byte arrays. The buffer versions record which
+ * LEDs they wrote for the output stages; use them whenever the data belongs to a buffer.
+ *
+ * <p>Channel values are treated as unsigned bytes in [0, 255] and all results saturate to that
+ * range. Scale factors are fixed-point with 8 fractional bits, so {@code 256} is a multiplier of 1.
+ */
+final class LEDBulkOps {
+  private LEDBulkOps() {
+    throw new UnsupportedOperationException("This is a utility class!");
+  }
+
+  /** Fixed-point representation of a multiplier of 1.0 (8 fractional bits). */
+  static final int kOne = Color.kFixedPointOne;
+
+  /**
+   * Finds the buffer that a reader and writer pair map onto as a single front-to-back run of
+   * pixels. That is the case for an {@link AddressableLEDBuffer} itself, and for views of one that
+   * are not reversed.
+   *
+   * @param reader the reader a pattern is being applied with
+   * @param writer the writer a pattern is being applied with
+   * @return the backing buffer, or null if bulk operations can't be used on this reader and writer
+   */
+  static AddressableLEDBuffer contiguousBuffer(LEDReader reader, LEDWriter writer) {
+    if (reader != writer) {
+      // a writer that intercepts data, such as in reversed() or offsetBy(); must go pixel by pixel
+      return null;
+    }
+    if (reader instanceof AddressableLEDBuffer buffer) {
+      return buffer;
+    }
+    if (reader instanceof AddressableLEDBufferView view) {
+      return view.contiguousBuffer();
+    }
+    return null;
+  }
+
+  /**
+   * Gets the index in the buffer from {@link #contiguousBuffer(LEDReader, LEDWriter)} of the first
+   * LED of a reader.
+   *
+   * @param reader the reader a pattern is being applied with
+   * @return the index of the first LED in the backing buffer
+   */
+  static int contiguousStart(LEDReader reader) {
+    if (reader instanceof AddressableLEDBufferView view) {
+      return view.contiguousStart();
+    }
+    return 0;
+  }
+
+  /**
+   * Multiplies every channel of a run of LEDs in a buffer by the same amount.
+   *
+   * @param buffer the buffer to modify
+   * @param start index of the first LED
+   * @param length number of LEDs
+   * @param multiplier fixed-point multiplier; 256 leaves the LEDs unchanged
+   */
+  static void scale(AddressableLEDBuffer buffer, int start, int length, int multiplier) {
+    scale(buffer.m_buffer, start, length, multiplier);
+    buffer.markDirty(start, length);
+  }
+
+  /**
+   * Linearly interpolates a run of LEDs in a buffer toward the LEDs of another buffer, in place.
+   *
+   * @param dst the buffer to interpolate from, and to store the result in
+   * @param dstStart index of the first LED in {@code dst}
+   * @param src the buffer to interpolate toward
+   * @param srcStart index of the first LED in {@code src}
+   * @param length number of LEDs
+   * @param t fixed-point interpolation value in [0, 256]
+   */
+  static void lerp(
+      AddressableLEDBuffer dst,
+      int dstStart,
+      AddressableLEDBuffer src,
+      int srcStart,
+      int length,
+      int t) {
+    lerp(dst.m_buffer, dstStart, src.m_buffer, srcStart, length, t);
+    dst.markDirty(dstStart, length);
+  }
+
+  /**
+   * Bitwise ANDs a run of LEDs in a buffer with the LEDs of another buffer, in place.
+   *
+   * @param dst the buffer to mask, and to store the result in
+   * @param dstStart index of the first LED in {@code dst}
+   * @param src the buffer holding the mask
+   * @param srcStart index of the first LED in {@code src}
+   * @param length number of LEDs
+   */
+  static void and(
+      AddressableLEDBuffer dst, int dstStart, AddressableLEDBuffer src, int srcStart, int length) {
+    and(dst.m_buffer, dstStart, src.m_buffer, srcStart, length);
+    dst.markDirty(dstStart, length);
+  }
+
+  /**
+   * Keeps the brighter of each channel of a run of LEDs in a buffer and the LEDs of another buffer,
+   * in place.
+   *
+   * @param dst the buffer to brighten, and to store the result in
+   * @param dstStart index of the first LED in {@code dst}
+   * @param src the buffer to take brighter channels from
+   * @param srcStart index of the first LED in {@code src}
+   * @param length number of LEDs
+   */
+  static void max(
+      AddressableLEDBuffer dst, int dstStart, AddressableLEDBuffer src, int srcStart, int length) {
+    max(dst.m_buffer, dstStart, src.m_buffer, srcStart, length);
+    dst.markDirty(dstStart, length);
+  }
+
+  /**
+   * Multiplies every channel of a run of pixels by the same amount.
+   *
+   * @param data BGRx pixel data
+   * @param start index of the first pixel
+   * @param length number of pixels
+   * @param multiplier fixed-point multiplier; 256 leaves the pixels unchanged
+   */
+  static void scale(byte[] data, int start, int length, int multiplier) {
+    // anything past this saturates every lit channel, and it keeps the products inside an int
+    int m = Math.max(0, Math.min(multiplier, 255 * kOne));
+    for (int i = start * 4, end = (start + length) * 4; i < end; i += 4) {
+      data[i] = (byte) Math.min(((data[i] & 0xFF) * m) >> 8, 255);
+      data[i + 1] = (byte) Math.min(((data[i + 1] & 0xFF) * m) >> 8, 255);
+      data[i + 2] = (byte) Math.min(((data[i + 2] & 0xFF) * m) >> 8, 255);
+    }
+  }
+
+  /**
+   * Linearly interpolates a run of pixels toward the pixels of another run, in place.
+   *
+   * @param dst BGRx pixel data to interpolate from, and to store the result in
+   * @param dstStart index of the first pixel in {@code dst}
+   * @param src BGRx pixel data to interpolate toward
+   * @param srcStart index of the first pixel in {@code src}
+   * @param length number of pixels
+   * @param t fixed-point interpolation value in [0, 256]; 0 keeps {@code dst}, 256 copies {@code
+   *     src}
+   */
+  static void lerp(byte[] dst, int dstStart, byte[] src, int srcStart, int length, int t) {
+    int f = Math.max(0, Math.min(t, kOne));
+    for (int i = dstStart * 4, j = srcStart * 4, end = (dstStart + length) * 4;
+        i < end;
+        i += 4, j += 4) {
+      dst[i] = (byte) lerp(dst[i] & 0xFF, src[j] & 0xFF, f);
+      dst[i + 1] = (byte) lerp(dst[i + 1] & 0xFF, src[j + 1] & 0xFF, f);
+      dst[i + 2] = (byte) lerp(dst[i + 2] & 0xFF, src[j + 2] & 0xFF, f);
+    }
+  }
+
+  private static int lerp(int a, int b, int t) {
+    return a + (((b - a) * t) >> 8);
+  }
+
+  /**
+   * Bitwise ANDs a run of pixels with the pixels of another run, in place.
+   *
+   * @param dst BGRx pixel data to mask, and to store the result in
+   * @param dstStart index of the first pixel in {@code dst}
+   * @param src BGRx pixel data of the mask
+   * @param srcStart index of the first pixel in {@code src}
+   * @param length number of pixels
+   */
+  static void and(byte[] dst, int dstStart, byte[] src, int srcStart, int length) {
+    for (int i = dstStart * 4, j = srcStart * 4, end = (dstStart + length) * 4;
+        i < end;
+        i++, j++) {
+      dst[i] &= src[j];
+    }
+  }
+
+  /**
+   * Keeps the brighter of each channel of a run of pixels and the pixels of another run, in place.
+   *
+   * @param dst BGRx pixel data to brighten, and to store the result in
+   * @param dstStart index of the first pixel in {@code dst}
+   * @param src BGRx pixel data to take brighter channels from
+   * @param srcStart index of the first pixel in {@code src}
+   * @param length number of pixels
+   */
+  static void max(byte[] dst, int dstStart, byte[] src, int srcStart, int length) {
+    for (int i = dstStart * 4, j = srcStart * 4, end = (dstStart + length) * 4;
+        i < end;
+        i += 4, j += 4) {
+      dst[i] = (byte) Math.max(dst[i] & 0xFF, src[j] & 0xFF);
+      dst[i + 1] = (byte) Math.max(dst[i + 1] & 0xFF, src[j + 1] & 0xFF);
+      dst[i + 2] = (byte) Math.max(dst[i + 2] & 0xFF, src[j + 2] & 0xFF);
+    }
+  }
+
+  /**
+   * Copies a run of pixels through a separate lookup table for each channel.
+   *
+   * @param src BGRx pixel data to read
+   * @param srcStart index of the first pixel in {@code src}
+   * @param dst BGRx pixel data to write; may be the same array as {@code src}
+   * @param dstStart index of the first pixel in {@code dst}
+   * @param length number of pixels
+   * @param red 256-entry table of output values for the red channel
+   * @param green 256-entry table of output values for the green channel
+   * @param blue 256-entry table of output values for the blue channel
+   */
+  static void map(
+      byte[] src,
+      int srcStart,
+      byte[] dst,
+      int dstStart,
+      int length,
+      byte[] red,
+      byte[] green,
+      byte[] blue) {
+    for (int i = dstStart * 4, j = srcStart * 4, end = (dstStart + length) * 4;
+        i < end;
+        i += 4, j += 4) {
+      dst[i] = blue[src[j] & 0xFF];
+      dst[i + 1] = green[src[j + 1] & 0xFF];
+      dst[i + 2] = red[src[j + 2] & 0xFF];
+      dst[i + 3] = 0;
+    }
+  }
+
+  /**
+   * Scratch space for rendering a second pattern off to the side of the buffer so it can be
+   * combined with the buffer in bulk.
+   *
+   * <p>Each reader gets its own scratch buffer, reallocated only when the reader's length changes.
+   * So a pattern rendered into it that keeps state per reader, such as fire or a persistent trail,
+   * keeps it per view, and views of different lengths don't take turns reallocating one buffer.
+   */
+  static final class Scratch {
+    // keyed by identity, since readers don't override equals; entries go away with their readers
+    private final Map<LEDReader, AddressableLEDBuffer> m_buffers = new WeakHashMap<>();
+
+    /**
+     * Gets the scratch buffer for a reader. Its contents are whatever was last written to it.
+     *
+     * @param reader the reader the scratch buffer is for
+     * @return the scratch buffer, the same length as the reader
+     */
+    AddressableLEDBuffer get(LEDReader reader) {
+      int length = reader.getLength();
+      var buffer = m_buffers.get(reader);
+      if (buffer == null || buffer.getLength() != length) {
+        buffer = new AddressableLEDBuffer(length);
+        m_buffers.put(reader, buffer);
+      }
+      return buffer;
+    }
+  }
+
+  /**
+   * A writer that passes LEDs on to another writer, optionally looking each channel up in a table
+   * and reversing the order of the LEDs on the way. Patterns that can't use the bulk operations
+   * keep one and point it at the writer of each call, since a lambda capturing the writer would be
+   * a new object every frame.
+   */
+  static final class RemappingWriter implements LEDWriter {
+    private LEDWriter m_writer;
+    private byte[] m_table; // null to pass the channels through
+    private int m_lastIndex; // the last LED's index, to reverse; or -1 not to
+
+    /**
+     * Points the writer at the writer of this call.
+     *
+     * @param writer where to write the LEDs
+     * @param table the 256-entry channel lookup table, or null for none
+     * @param reversedLength the number of LEDs to reverse the order of, or 0 to keep the order
+     * @return this writer
+     */
+    RemappingWriter to(LEDWriter writer, byte[] table, int reversedLength) {
+      m_writer = writer;
+      m_table = table;
+      m_lastIndex = reversedLength - 1;
+      return this;
+    }
+
+    @Override
+    public void setRGB(int index, int r, int g, int b) {
+      int i = m_lastIndex < 0 ? index : m_lastIndex - index;
+      byte[] table = m_table;
+      if (table != null) {
+        m_writer.setRGB(i, table[r] & 0xFF, table[g] & 0xFF, table[b] & 0xFF);
+      } else {
+        m_writer.setRGB(i, r, g, b);
+      }
+    }
+  }
+
+  /**
+   * Remembers what a motionless pattern renders to at each length it's applied at, so after the
+   * first frame it can be copied into the buffer in one pass rather than rendered again. This is
+   * only correct for patterns whose output depends on nothing but the length of the buffer.
+   *
+   * <p>One frame is kept per distinct length, so the same pattern can be shared between views of
+   * different lengths.
+   */
+  static final class FrameCache {
+    private final LEDPattern m_pattern;
+    private final LongToObjectHashMap<byte[]> m_frames = new LongToObjectHashMap<>();
+
+    /**
+     * Creates a cache of a pattern's frames.
+     *
+     * @param pattern the motionless pattern to cache
+     */
+    FrameCache(LEDPattern pattern) {
+      m_pattern = pattern;
+    }
+
+    /**
+     * Writes the pattern, rendering it only if it hasn't been rendered at this length before.
+     *
+     * @param reader data reader for accessing buffer length
+     * @param writer data writer for setting new LED colors on the buffer
+     */
+    void applyTo(LEDReader reader, LEDWriter writer) {
+      int length = reader.getLength();
+      byte[] frame = m_frames.get(length);
+      if (frame == null) {
+        var rendered = new AddressableLEDBuffer(length);
+        m_pattern.applyTo(rendered);
+        frame = rendered.m_buffer;
+        m_frames.put(length, frame);
+      }
+
+      var buffer = contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        int start = contiguousStart(reader);
+        System.arraycopy(frame, 0, buffer.m_buffer, start * 4, length * 4);
+        buffer.markDirty(start, length);
+        return;
+      }
+
+      for (int led = 0; led < length; led++) {
+        int i = led * 4;
+        writer.setRGB(led, frame[i + 2] & 0xFF, frame[i + 1] & 0xFF, frame[i] & 0xFF);
+      }
+    }
+  }
+
+  /**
+   * Draws a pattern rotated along the buffer, as scrolling and offset patterns do. The pattern is
+   * rendered front-to-back into a row, which is then written out as two contiguous runs: the end
+   * of the row at the start of the buffer, and the rest after it. The row is rendered again only
+   * when the pattern may have changed, so scrolling a motionless pattern just copies the same row
+   * to a different place every frame.
+   *
+   * <p>Each reader the pattern is applied to gets its own row, so a pattern that keeps state per
+   * reader, such as fire or a persistent trail, keeps it per view here too, and views of different
+   * lengths don't take turns reallocating one row. Once a reader's row exists, applying the
+   * pattern allocates nothing.
+   */
+  static final class Rotation {
+    private final LEDPattern m_pattern;
+    // keyed by identity, since readers don't override equals; entries go away with their readers
+    private final Map<LEDReader, Row> m_rows = new WeakHashMap<>();
+
+    /** The rendered row for one reader. */
+    private static final class Row {
+      private final AddressableLEDBuffer m_leds;
+      private long m_validUntilMicros; // when the pattern may next change from the rendered row
+
+      private Row(int length) {
+        m_leds = new AddressableLEDBuffer(length);
+      }
+    }
+
+    /**
+     * Creates a rotation of a pattern.
+     *
+     * @param pattern the pattern to rotate
+     */
+    Rotation(LEDPattern pattern) {
+      m_pattern = pattern;
+    }
+
+    /**
+     * Writes the pattern rotated by some number of LEDs; the LED the pattern writes at index
+     * {@code i} is shown at {@code floorMod(i + offset, length)}.
+     *
+     * @param reader data reader for accessing buffer length
+     * @param writer data writer for setting new LED colors on the buffer
+     * @param offset how many LEDs to rotate by; may be negative or longer than the buffer
+     */
+    void applyTo(LEDReader reader, LEDWriter writer, long offset) {
+      int length = reader.getLength();
+      if (length == 0) {
+        return;
+      }
+
+      var row = m_rows.get(reader);
+      if (row == null || row.m_leds.getLength() != length) {
+        row = new Row(length); // valid until 0, so it's rendered now
+        m_rows.put(reader, row);
+      }
+      long now = WPIUtilJNI.now();
+      if (now >= row.m_validUntilMicros) {
+        m_pattern.applyTo(row.m_leds);
+        row.m_validUntilMicros = m_pattern.nextChangeTimeMicros(now);
+      }
+      var leds = row.m_leds;
+
+      int shift = (int) Math.floorMod(offset, (long) length);
+      int split = length - shift; // LEDs [0, split) of the row move up, the rest wrap around
+
+      var buffer = contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        int start = contiguousStart(reader);
+        System.arraycopy(leds.m_buffer, 0, buffer.m_buffer, (start + shift) * 4, split * 4);
+        System.arraycopy(leds.m_buffer, split * 4, buffer.m_buffer, start * 4, shift * 4);
+        buffer.markDirty(start, length);
+        return;
+      }
+
+      for (int led = 0; led < split; led++) {
+        int rgb = leds.getPacked(led);
+        writer.setRGB(
+            led + shift,
+            Color.unpackRGB(rgb, Color.RGBChannel.kRed),
+            Color.unpackRGB(rgb, Color.RGBChannel.kGreen),
+            Color.unpackRGB(rgb, Color.RGBChannel.kBlue));
+      }
+      for (int led = split; led < length; led++) {
+        int rgb = leds.getPacked(led);
+        writer.setRGB(
+            led - split,
+            Color.unpackRGB(rgb, Color.RGBChannel.kRed),
+            Color.unpackRGB(rgb, Color.RGBChannel.kGreen),
+            Color.unpackRGB(rgb, Color.RGBChannel.kBlue));
+      }
+    }
+  }
+
+  /**
+   * Persistent frames for patterns that leave fading trails behind them. Each reader the pattern
+   * is applied to gets its own frame, which is faded according to how much time has passed, then
+   * has the pattern's newly lit LEDs merged in by keeping the brighter of each channel.
+   *
+   * <p>Once a reader's frame exists, applying the pattern allocates nothing.
+   */
+  static final class Persistence {
+    private final LEDPattern m_pattern;
+    private final double m_halfLifeMicros;
+    // keyed by identity, since readers don't override equals; entries go away with their readers
+    private final Map<LEDReader, Trail> m_trails = new WeakHashMap<>();
+    private final Scratch m_scratch = new Scratch();
+
+    /** The persistent frame for one reader. */
+    private static final class Trail {
+      private final AddressableLEDBuffer m_frame;
+      private long m_lastFadeMicros;
+
+      private Trail(int length, long nowMicros) {
+        m_frame = new AddressableLEDBuffer(length);
+        m_lastFadeMicros = nowMicros;
+      }
+    }
+
+    /**
+     * Creates persistent frames for a pattern.
+     *
+     * @param pattern the pattern whose LEDs leave trails
+     * @param halfLifeMicros how long it takes a trail to fade to half brightness
+     */
+    Persistence(LEDPattern pattern, double halfLifeMicros) {
+      m_pattern = pattern;
+      m_halfLifeMicros = halfLifeMicros;
+    }
+
+    /**
+     * Fades the reader's frame, merges the pattern into it and writes the result.
+     *
+     * @param reader data reader for accessing buffer length
+     * @param writer data writer for setting new LED colors on the buffer
+     */
+    void applyTo(LEDReader reader, LEDWriter writer) {
+      int length = reader.getLength();
+      long now = WPIUtilJNI.now();
+
+      var trail = m_trails.get(reader);
+      if (trail == null || trail.m_frame.getLength() != length) {
+        trail = new Trail(length, now);
+        m_trails.put(reader, trail);
+      }
+      var frame = trail.m_frame;
+
+      // fade by however much time has passed, so the trails are the same length at any loop rate;
+      // too short a time to fade anything is left to build up until the next frame
+      double retention = Math.pow(0.5, (now - trail.m_lastFadeMicros) / m_halfLifeMicros);
+      int multiplier = Color.toFixedPoint(retention);
+      if (multiplier < kOne) {
+        scale(frame, 0, length, multiplier);
+        trail.m_lastFadeMicros = now;
+      }
+
+      // render the pattern on black, so LEDs it doesn't light leave the trails alone
+      var lit = m_scratch.get(reader);
+      Arrays.fill(lit.m_buffer, (byte) 0);
+      m_pattern.applyTo(lit);
+      max(frame, 0, lit, 0, length);
+
+      var buffer = contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        int start = contiguousStart(reader);
+        System.arraycopy(frame.m_buffer, 0, buffer.m_buffer, start * 4, length * 4);
+        buffer.markDirty(start, length);
+        return;
+      }
+
+      for (int led = 0; led < length; led++) {
+        writer.setRGB(led, frame.getRed(led), frame.getGreen(led), frame.getBlue(led));
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Color correction for an LED strip, applied to the whole frame as it is sent to the LEDs. The
+ * colors the patterns wrote to the {@link AddressableLEDBuffer} are left untouched, so patterns
+ * that read back from the buffer still see what they wrote.
+ *
+ * <p>LED brightness is close to linear in the PWM duty cycle, but our eyes are not, so dim colors
+ * look too bright and washed out unless gamma corrected. The correction also balances the channels
+ * of strips with a color cast and caps the overall brightness.
+ *
+ * <p>All of that is folded into one 256-entry lookup table per channel when the correction is
+ * created, so correcting a frame costs three array lookups per LED no matter how expensive the
+ * correction is to calculate.
+ *
+ * <pre><code>
+ *   AddressableLED led = new AddressableLED(0);
+ *   // gamma 2.2, tone down a blue-ish strip, never more than half brightness
+ *   led.setColorCorrection(new LEDColorCorrection(2.2, 1.0, 0.95, 0.8, 0.5));
+ * </code></pre>
+ */
+public class LEDColorCorrection {
+  private final byte[] m_red;
+  private final byte[] m_green;
+  private final byte[] m_blue;
+
+  /**
+   * Creates a color correction.
+   *
+   * @param gamma the gamma exponent; 1.0 is no correction and about 2.2 suits most LED strips
+   * @param redBalance multiplier for the red channel, in [0, 1]
+   * @param greenBalance multiplier for the green channel, in [0, 1]
+   * @param blueBalance multiplier for the blue channel, in [0, 1]
+   * @param brightnessCap multiplier for all channels limiting the overall brightness, in [0, 1]
+   */
+  public LEDColorCorrection(
+      double gamma,
+      double redBalance,
+      double greenBalance,
+      double blueBalance,
+      double brightnessCap) {
+    m_red = table(gamma, redBalance * brightnessCap);
+    m_green = table(gamma, greenBalance * brightnessCap);
+    m_blue = table(gamma, blueBalance * brightnessCap);
+  }
+
+  /**
+   * Creates a color correction that only applies gamma correction.
+   *
+   * @param gamma the gamma exponent; 1.0 is no correction and about 2.2 suits most LED strips
+   * @return the color correction
+   */
+  public static LEDColorCorrection gamma(double gamma) {
+    return new LEDColorCorrection(gamma, 1.0, 1.0, 1.0, 1.0);
+  }
+
+  private static byte[] table(double gamma, double multiplier) {
+    double clamped = Math.max(0.0, Math.min(multiplier, 1.0));
+    byte[] table = new byte[256];
+    for (int c = 0; c < 256; c++) {
+      table[c] = (byte) Math.round(Math.pow(c / 255.0, gamma) * clamped * 255);
+    }
+    return table;
+  }
+
+  /**
+   * Gets the corrected value of a channel.
+   *
+   * @param channel the channel
+   * @param value the value of the channel, in [0, 255]
+   * @return the corrected value, in [0, 255]
+   */
+  public int correct(Color.RGBChannel channel, int value) {
+    byte[] table =
+        switch (channel) {
+          case kRed -> m_red;
+          case kGreen -> m_green;
+          case kBlue -> m_blue;
+        };
+    return table[value & 0xFF] & 0xFF;
+  }
+
+  /**
+   * Corrects a run of LEDs of BGRx data in a single pass.
+   *
+   * @param src the uncorrected data
+   * @param dst where to write the corrected data, at the same positions as in {@code src}
+   * @param start index of the first LED to correct
+   * @param length number of LEDs to correct
+   */
+  void apply(byte[] src, byte[] dst, int start, int length) {
+    LEDBulkOps.map(src, start, dst, start, length, m_red, m_green, m_blue);
+  }
+}
@@ -0,0 +1,276 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Objects;
+
+/**
+ * An {@link LEDOutput} that records every frame sent to it, for tests and for simulation without
+ * the GUI. Frames are kept with the time they were sent in a ring buffer that is allocated up
+ * front, so recording a frame is a single copy; once the buffer is full, each new frame replaces
+ * the oldest.
+ *
+ * <pre>
+ *   var capture = new LEDFrameCapture(500, 56, LEDFrameCapture.Stage.kWritten);
+ *   var signals = new RobotSignals(capture);
+ *   // ... run the robot for a while ...
+ *   long frame = capture.findFirst(0, 7, Color.packRGB(0, 0, 255), capture.getOldestFrame());
+ * </pre>
+ *
+ * <p>Frames are numbered from 0 in the order they were sent, and keep their numbers as older
+ * frames are dropped. Which frames are kept depends on the {@link Stage} the capture was created
+ * with: the colors the patterns wrote, which the searches can look for directly, or what the LEDs
+ * would show after the {@link AddressableLED}'s color correction and power limiting, in which
+ * case a pattern's color only matches if neither changed it. Any output the frames pass through
+ * on the way, such as an {@link LEDFramePublisher}, sees the same frames.
+ */
+public class LEDFrameCapture implements LEDOutput {
+  /** Returned by the searches when no frame matches. */
+  public static final long kNotFound = -1;
+
+  /** Which frames a capture keeps. */
+  public enum Stage {
+    /** The frames as the buffer holds them, with the colors the patterns wrote. */
+    kWritten,
+    /** The frames as the LEDs would show them, after color correction and power limiting. */
+    kShown
+  }
+
+  private final Stage m_stage;
+  private final int m_capacity;
+  private final int m_maxLength;
+  private final byte[] m_frames; // m_capacity slots of m_maxLength LEDs of BGRx
+  private final long[] m_timestamps;
+  private final int[] m_lengths;
+  private long m_frameCount;
+  private int m_length;
+  private boolean m_running;
+
+  /**
+   * Creates a capture sink that keeps the frames as the LEDs would show them.
+   *
+   * @param capacity how many of the most recent frames to keep
+   * @param maxLength the longest strip the sink can record
+   */
+  public LEDFrameCapture(int capacity, int maxLength) {
+    this(capacity, maxLength, Stage.kShown);
+  }
+
+  /**
+   * Creates a capture sink.
+   *
+   * @param capacity how many of the most recent frames to keep
+   * @param maxLength the longest strip the sink can record
+   * @param stage which frames to keep
+   */
+  public LEDFrameCapture(int capacity, int maxLength, Stage stage) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+    }
+    m_stage = Objects.requireNonNull(stage);
+    m_capacity = capacity;
+    m_maxLength = maxLength;
+    m_frames = new byte[capacity * maxLength * 4];
+    m_timestamps = new long[capacity];
+    m_lengths = new int[capacity];
+  }
+
+  @Override
+  public void setLength(int length) {
+    if (length < 0 || length > m_maxLength) {
+      throw new IllegalArgumentException(
+          "Length must be in [0, " + m_maxLength + "], got " + length);
+    }
+    m_length = length;
+  }
+
+  @Override
+  public void setData(byte[] data) {
+    int slot = (int) (m_frameCount % m_capacity);
+    int length = Math.min(m_length, data.length / 4);
+    System.arraycopy(data, 0, m_frames, slot * m_maxLength * 4, length * 4);
+    m_timestamps[slot] = WPIUtilJNI.now();
+    m_lengths[slot] = length;
+    m_frameCount++;
+  }
+
+  @Override
+  public boolean isBeforeOutputStages() {
+    return m_stage == Stage.kWritten;
+  }
+
+  @Override
+  public void start() {
+    m_running = true;
+  }
+
+  @Override
+  public void stop() {
+    m_running = false;
+  }
+
+  /**
+   * Checks if the output has been started, as real LEDs would only show the frames if it had.
+   *
+   * @return true if started and not stopped since
+   */
+  public boolean isRunning() {
+    return m_running;
+  }
+
+  /**
+   * Gets which frames the capture keeps.
+   *
+   * @return the stage the frames are taken at
+   */
+  public Stage getStage() {
+    return m_stage;
+  }
+
+  /** Forgets every frame recorded so far. Frame numbers start again from 0. */
+  public void clear() {
+    m_frameCount = 0;
+  }
+
+  /**
+   * Gets how many frames have been sent, including frames that have since been dropped.
+   *
+   * @return the number of frames; also the number the next frame will get
+   */
+  public long getFrameCount() {
+    return m_frameCount;
+  }
+
+  /**
+   * Gets the number of the oldest frame still kept.
+   *
+   * @return the frame number; equal to {@link #getFrameCount()} if no frames are kept
+   */
+  public long getOldestFrame() {
+    return Math.max(0, m_frameCount - m_capacity);
+  }
+
+  /**
+   * Gets the number of the most recent frame.
+   *
+   * @return the frame number, or {@link #kNotFound} if no frames were sent
+   */
+  public long getLatestFrame() {
+    return m_frameCount - 1;
+  }
+
+  /**
+   * Gets the time a frame was sent.
+   *
+   * @param frame the frame number
+   * @return the time from {@link WPIUtilJNI#now()}, in microseconds
+   * @throws IndexOutOfBoundsException if the frame isn't kept
+   */
+  public long getTimestamp(long frame) {
+    return m_timestamps[slot(frame)];
+  }
+
+  /**
+   * Gets the number of LEDs in a frame.
+   *
+   * @param frame the frame number
+   * @return the number of LEDs
+   * @throws IndexOutOfBoundsException if the frame isn't kept
+   */
+  public int getLength(long frame) {
+    return m_lengths[slot(frame)];
+  }
+
+  /**
+   * Gets the color of an LED in a frame as a packed 32-bit RGB integer.
+   *
+   * @param frame the frame number
+   * @param index the index of the LED
+   * @return the color, packed as by {@link Color#packRGB(int, int, int)}
+   * @throws IndexOutOfBoundsException if the frame isn't kept or the LED isn't in it
+   */
+  public int getPacked(long frame, int index) {
+    int slot = slot(frame);
+    Objects.checkIndex(index, m_lengths[slot]);
+    return packedAt(slot, index);
+  }
+
+  /**
+   * Gets the color of an LED in a frame.
+   *
+   * @param frame the frame number
+   * @param index the index of the LED
+   * @return the color
+   * @throws IndexOutOfBoundsException if the frame isn't kept or the LED isn't in it
+   */
+  public Color8Bit getLED8Bit(long frame, int index) {
+    int rgb = getPacked(frame, index);
+    return new Color8Bit(
+        Color.unpackRGB(rgb, Color.RGBChannel.kRed),
+        Color.unpackRGB(rgb, Color.RGBChannel.kGreen),
+        Color.unpackRGB(rgb, Color.RGBChannel.kBlue));
+  }
+
+  /**
+   * Finds the first frame, at or after a given one, in which every LED of a section of the strip
+   * shows the same color. The section is given as for {@link AddressableLEDBuffer#createView(int,
+   * int)}, so it can be the placement of a view.
+   *
+   * @param first the index of the first LED of the section (inclusive)
+   * @param last the index of the last LED of the section (inclusive)
+   * @param rgb the color, packed as by {@link Color#packRGB(int, int, int)}
+   * @param fromFrame the frame number to start searching at; earlier frames that are no longer
+   *     kept are skipped
+   * @return the frame number, or {@link #kNotFound}
+   */
+  public long findFirst(int first, int last, int rgb, long fromFrame) {
+    int start = Math.min(first, last);
+    int end = Math.max(first, last);
+    rgb &= 0x00FFFFFF;
+
+    for (long frame = Math.max(fromFrame, getOldestFrame()); frame < m_frameCount; frame++) {
+      int slot = (int) (frame % m_capacity);
+      if (end >= m_lengths[slot]) {
+        continue;
+      }
+      boolean matches = true;
+      for (int led = start; led <= end && matches; led++) {
+        matches = packedAt(slot, led) == rgb;
+      }
+      if (matches) {
+        return frame;
+      }
+    }
+    return kNotFound;
+  }
+
+  /**
+   * Finds when a section of the strip first showed a color in every LED, among the frames kept.
+   *
+   * @param first the index of the first LED of the section (inclusive)
+   * @param last the index of the last LED of the section (inclusive)
+   * @param rgb the color, packed as by {@link Color#packRGB(int, int, int)}
+   * @return the time of the first frame showing the color, in microseconds, or {@link #kNotFound}
+   */
+  public long firstTimeShowing(int first, int last, int rgb) {
+    long frame = findFirst(first, last, rgb, getOldestFrame());
+    return frame == kNotFound ? kNotFound : getTimestamp(frame);
+  }
+
+  private int slot(long frame) {
+    if (frame < getOldestFrame() || frame >= m_frameCount) {
+      throw new IndexOutOfBoundsException(
+          "Frame " + frame + " is not kept; kept frames are " + getOldestFrame() + " to "
+              + (m_frameCount - 1));
+    }
+    return (int) (frame % m_capacity);
+  }
+
+  private int packedAt(int slot, int index) {
+    int i = (slot * m_maxLength + index) * 4;
+    return Color.packRGB(m_frames[i + 2] & 0xFF, m_frames[i + 1] & 0xFF, m_frames[i] & 0xFF);
+  }
+}
@@ -0,0 +1,197 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Compresses LED frames as the change from the previous frame, for recordings and telemetry where
+ * most frames differ from the one before in only a few LEDs, if any.
+ *
+ * <p>Each LED of the new frame is XORed with the same LED of the previous frame, which leaves zero
+ * wherever nothing changed, and the XORed frame is run-length encoded as a sequence of tokens:
+ *
+ * <ul>
+ *   <li>skip {@code n}: the next {@code n} LEDs are unchanged
+ *   <li>run {@code n}, then 3 bytes: the next {@code n} LEDs are all XORed with the same value, as
+ *       when a whole view changes from one solid color to another
+ *   <li>literal {@code n}, then 3 bytes per LED: the next {@code n} LEDs each have their own value
+ * </ul>
+ *
+ * <p>A token is an unsigned LEB128 varint of {@code (n << 2) | kind}, and LED values are 3 bytes
+ * in BGR order, as in the frames. An unchanged frame encodes to a single token, and a view that
+ * switches to a new solid color costs about 5 bytes. Encoding against a frame of all zeros gives a
+ * self-contained key frame.
+ */
+final class LEDFrameCodec {
+  private LEDFrameCodec() {
+    throw new UnsupportedOperationException("This is a utility class!");
+  }
+
+  private static final int kSkip = 0;
+  private static final int kRun = 1;
+  private static final int kLiteral = 2;
+
+  /**
+   * Gets the most bytes a frame can encode to.
+   *
+   * @param length the number of LEDs in the frame
+   * @return the size in bytes
+   */
+  static int maxEncodedSize(int length) {
+    // tokens average at most 3 bytes per LED they cover, except a literal of one LED, which the
+    // skip or run next to it pays for; the slack covers tokens longer than a byte
+    return length * 3 + 16;
+  }
+
+  /**
+   * Encodes a frame as its change from the previous frame.
+   *
+   * @param previous the previous frame, BGRx
+   * @param current the new frame, BGRx
+   * @param length the number of LEDs in each frame
+   * @param out where to write the encoded frame; at least {@link #maxEncodedSize(int)} bytes from
+   *     {@code outOffset}
+   * @param outOffset the position in {@code out} to write at
+   * @return the number of bytes written
+   */
+  static int encode(byte[] previous, byte[] current, int length, byte[] out, int outOffset) {
+    int pos = outOffset;
+    int led = 0;
+    while (led < length) {
+      int delta = delta(previous, current, led);
+
+      if (delta == 0) {
+        int end = led + 1;
+        while (end < length && delta(previous, current, end) == 0) {
+          end++;
+        }
+        pos = writeVarint(out, pos, ((end - led) << 2) | kSkip);
+        led = end;
+        continue;
+      }
+
+      int end = led + 1;
+      while (end < length && delta(previous, current, end) == delta) {
+        end++;
+      }
+      if (end - led >= 2) {
+        pos = writeVarint(out, pos, ((end - led) << 2) | kRun);
+        pos = writePixel(out, pos, delta);
+        led = end;
+        continue;
+      }
+
+      // a literal stretch, up to the next unchanged LED or the next run of two or more
+      end = led + 1;
+      while (end < length) {
+        int next = delta(previous, current, end);
+        if (next == 0 || (end + 1 < length && delta(previous, current, end + 1) == next)) {
+          break;
+        }
+        end++;
+      }
+      pos = writeVarint(out, pos, ((end - led) << 2) | kLiteral);
+      for (; led < end; led++) {
+        pos = writePixel(out, pos, delta(previous, current, led));
+      }
+    }
+    return pos - outOffset;
+  }
+
+  /**
+   * Decodes a frame, turning the previous frame into the new one in place.
+   *
+   * @param in the encoded frame
+   * @param inOffset the position in {@code in} the encoded frame starts at
+   * @param frame the previous frame, BGRx, which is changed into the new frame
+   * @param length the number of LEDs in the frame
+   * @return the number of bytes of {@code in} read
+   * @throws IllegalArgumentException if the encoded frame is malformed or doesn't cover exactly
+   *     {@code length} LEDs
+   */
+  static int decode(byte[] in, int inOffset, byte[] frame, int length) {
+    int pos = inOffset;
+    int led = 0;
+    while (led < length) {
+      int token = 0;
+      for (int shift = 0; ; shift += 7) {
+        if (shift > 28 || pos >= in.length) {
+          throw new IllegalArgumentException("Malformed LED frame");
+        }
+        byte b = in[pos++];
+        token |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          break;
+        }
+      }
+
+      int count = token >>> 2;
+      if (count == 0 || count > length - led) {
+        throw new IllegalArgumentException("Malformed LED frame");
+      }
+      switch (token & 3) {
+        case kSkip -> led += count;
+        case kRun -> {
+          checkAvailable(in, pos, 3);
+          for (int end = led + count; led < end; led++) {
+            applyPixel(frame, led, in, pos);
+          }
+          pos += 3;
+        }
+        case kLiteral -> {
+          checkAvailable(in, pos, count * 3);
+          for (int end = led + count; led < end; led++, pos += 3) {
+            applyPixel(frame, led, in, pos);
+          }
+        }
+        default -> throw new IllegalArgumentException("Malformed LED frame");
+      }
+    }
+    return pos - inOffset;
+  }
+
+  private static int delta(byte[] previous, byte[] current, int led) {
+    int i = led * 4;
+    return ((previous[i] ^ current[i]) & 0xFF)
+        | ((previous[i + 1] ^ current[i + 1]) & 0xFF) << 8
+        | ((previous[i + 2] ^ current[i + 2]) & 0xFF) << 16;
+  }
+
+  private static void applyPixel(byte[] frame, int led, byte[] in, int pos) {
+    int i = led * 4;
+    frame[i] ^= in[pos];
+    frame[i + 1] ^= in[pos + 1];
+    frame[i + 2] ^= in[pos + 2];
+  }
+
+  private static void checkAvailable(byte[] in, int pos, int count) {
+    if (count > in.length - pos) {
+      throw new IllegalArgumentException("Malformed LED frame");
+    }
+  }
+
+  private static int writePixel(byte[] out, int pos, int value) {
+    out[pos] = (byte) value;
+    out[pos + 1] = (byte) (value >> 8);
+    out[pos + 2] = (byte) (value >> 16);
+    return pos + 3;
+  }
+
+  /**
+   * Writes an unsigned LEB128 varint.
+   *
+   * @param out where to write; up to 10 bytes are written
+   * @param pos the position to write at
+   * @param value the value, treated as unsigned
+   * @return the position after the varint
+   */
+  static int writeVarint(byte[] out, int pos, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out[pos++] = (byte) value;
+    return pos;
+  }
+}
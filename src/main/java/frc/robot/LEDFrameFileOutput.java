@@ -0,0 +1,140 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@link LEDOutput} that streams every frame sent to it into a ring of fixed-size slots in a
+ * memory-mapped file, for a visualizer running in another process (see {@link
+ * LEDFrameFileReader}). Both processes map the same file, so a frame is shared through the page
+ * cache as soon as it's written, with no serialization, socket or NetworkTables in between. Writing
+ * a frame is one copy into the mapping, so the stream keeps up with the robot loop.
+ *
+ * <p>The file is little-endian and laid out as:
+ *
+ * <pre>
+ *   header, 64 bytes:
+ *     int magic ("LEDF"), int version, int slot count, int max LEDs per slot,
+ *     long sequence number of the latest complete frame (0 before the first), reserved
+ *   slot count slots, each:
+ *     long sequence number of the frame in the slot, long timestamp (us), int LED count, int 0,
+ *     max LEDs per slot * 4 bytes of BGRx data, padded to a multiple of 8 bytes
+ * </pre>
+ *
+ * <p>Frame {@code n} (numbered from 1) goes in slot {@code (n - 1) % slot count}. While a slot is
+ * being written its sequence number is negative, so a reader that finds the same sequence number in
+ * the slot before and after copying the frame knows the copy wasn't torn by the writer lapping it.
+ */
+public class LEDFrameFileOutput implements LEDOutput {
+  static final int kMagic = 0x4644454C; // "LEDF" read as a little-endian int
+  static final int kVersion = 1;
+  static final int kHeaderSize = 64;
+  static final int kLatestSequenceOffset = 16;
+  static final int kSlotHeaderSize = 24;
+
+  /** Sequence numbers and other longs, with the memory ordering the slot protocol needs. */
+  static final VarHandle kLongs =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final MappedByteBuffer m_map;
+  private final int m_slotCount;
+  private final int m_maxLength;
+  private final int m_slotSize;
+  private long m_sequence;
+  private int m_length;
+
+  /**
+   * Creates the frame file, replacing any file already at the path.
+   *
+   * @param path where to create the file
+   * @param slotCount how many of the most recent frames the file holds
+   * @param maxLength the longest strip the file can hold
+   * @throws IOException if the file can't be created or mapped
+   */
+  public LEDFrameFileOutput(Path path, int slotCount, int maxLength) throws IOException {
+    if (slotCount <= 0) {
+      throw new IllegalArgumentException("Slot count must be positive, got " + slotCount);
+    }
+    m_slotCount = slotCount;
+    m_maxLength = maxLength;
+    m_slotSize = slotSize(maxLength);
+
+    try (var channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      // the mapping stays valid after the channel is closed
+      long size = kHeaderSize + (long) slotCount * m_slotSize;
+      m_map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    m_map.order(ByteOrder.LITTLE_ENDIAN);
+    m_map.putInt(0, kMagic);
+    m_map.putInt(4, kVersion);
+    m_map.putInt(8, slotCount);
+    m_map.putInt(12, maxLength);
+    kLongs.setRelease(m_map, kLatestSequenceOffset, 0L);
+  }
+
+  /**
+   * Gets the size of a slot.
+   *
+   * @param maxLength the max LEDs per slot
+   * @return the size in bytes
+   */
+  static int slotSize(int maxLength) {
+    return (kSlotHeaderSize + maxLength * 4 + 7) & ~7;
+  }
+
+  @Override
+  public void setLength(int length) {
+    if (length < 0 || length > m_maxLength) {
+      throw new IllegalArgumentException(
+          "Length must be in [0, " + m_maxLength + "], got " + length);
+    }
+    m_length = length;
+  }
+
+  @Override
+  public void setData(byte[] data) {
+    long sequence = ++m_sequence;
+    int slot = kHeaderSize + (int) ((sequence - 1) % m_slotCount) * m_slotSize;
+    int length = Math.min(m_length, data.length / 4);
+
+    kLongs.setRelease(m_map, slot, -sequence); // being written
+    VarHandle.storeStoreFence(); // before any of the frame is
+    m_map.putLong(slot + 8, WPIUtilJNI.now());
+    m_map.putInt(slot + 16, length);
+    m_map.put(slot + kSlotHeaderSize, data, 0, length * 4);
+    kLongs.setRelease(m_map, slot, sequence);
+    kLongs.setRelease(m_map, kLatestSequenceOffset, sequence);
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {}
+
+  /**
+   * Gets the sequence number of the latest frame written.
+   *
+   * @return the sequence number, or 0 if no frames were written
+   */
+  public long getLatestSequence() {
+    return m_sequence;
+  }
+}
@@ -0,0 +1,192 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the frames an {@link LEDFrameFileOutput} streams into a memory-mapped file, from another
+ * process such as an LED visualizer. The reader maps the file read-only and copies frames straight
+ * out of the mapping, so it can follow the robot at full rate.
+ *
+ * <pre>
+ *   var reader = new LEDFrameFileReader(Path.of("leds.bin"));
+ *   byte[] frame = new byte[reader.getMaxLength() * 4];
+ *   long seen = 0;
+ *   while (true) {
+ *     long latest = reader.getLatestSequence();
+ *     if (latest != seen &amp;&amp; reader.read(latest, frame)) {
+ *       seen = latest;
+ *       draw(frame, reader.getLength());
+ *     }
+ *   }
+ * </pre>
+ *
+ * <p>Run this class on its own to print a line for each frame as it arrives:
+ *
+ * <pre>
+ *   java -cp robot.jar frc.robot.LEDFrameFileReader leds.bin
+ * </pre>
+ */
+public class LEDFrameFileReader {
+  private final MappedByteBuffer m_map;
+  private final int m_slotCount;
+  private final int m_maxLength;
+  private final int m_slotSize;
+
+  // what the last successful read() found
+  private long m_timestamp;
+  private int m_length;
+
+  /**
+   * Opens a frame file.
+   *
+   * @param path the file an {@link LEDFrameFileOutput} is writing
+   * @throws IOException if the file can't be mapped or isn't a frame file
+   */
+  public LEDFrameFileReader(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      m_map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    m_map.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (m_map.capacity() < LEDFrameFileOutput.kHeaderSize
+        || m_map.getInt(0) != LEDFrameFileOutput.kMagic
+        || m_map.getInt(4) != LEDFrameFileOutput.kVersion) {
+      throw new IOException("Not an LED frame file: " + path);
+    }
+    m_slotCount = m_map.getInt(8);
+    m_maxLength = m_map.getInt(12);
+    m_slotSize = LEDFrameFileOutput.slotSize(m_maxLength);
+    if (m_map.capacity() < LEDFrameFileOutput.kHeaderSize + (long) m_slotCount * m_slotSize) {
+      throw new IOException("LED frame file is truncated: " + path);
+    }
+  }
+
+  /**
+   * Gets how many of the most recent frames the file holds.
+   *
+   * @return the number of slots
+   */
+  public int getSlotCount() {
+    return m_slotCount;
+  }
+
+  /**
+   * Gets the longest strip the file can hold.
+   *
+   * @return the max LEDs per frame
+   */
+  public int getMaxLength() {
+    return m_maxLength;
+  }
+
+  /**
+   * Gets the sequence number of the latest complete frame.
+   *
+   * @return the sequence number, or 0 if no frames have been written
+   */
+  public long getLatestSequence() {
+    return sequenceAt(LEDFrameFileOutput.kLatestSequenceOffset);
+  }
+
+  /**
+   * Copies a frame out of the file. Only the most recent frames are in the file, so a frame the
+   * writer has since replaced can't be read.
+   *
+   * @param sequence the sequence number of the frame
+   * @param dst where to copy the frame's BGRx data; LEDs past the end of the array are skipped
+   * @return true if the frame was copied; false if it isn't in the file
+   */
+  public boolean read(long sequence, byte[] dst) {
+    if (sequence <= 0) {
+      return false;
+    }
+    int slot = LEDFrameFileOutput.kHeaderSize + (int) ((sequence - 1) % m_slotCount) * m_slotSize;
+
+    if (sequenceAt(slot) != sequence) {
+      return false;
+    }
+    long timestamp = m_map.getLong(slot + 8);
+    int length = Math.min(m_map.getInt(slot + 16), m_maxLength);
+    m_map.get(slot + LEDFrameFileOutput.kSlotHeaderSize, dst, 0, Math.min(length * 4, dst.length));
+    VarHandle.loadLoadFence(); // finish reading the frame before checking it's still there
+    if (sequenceAt(slot) != sequence) {
+      return false; // the writer lapped us while copying
+    }
+
+    m_timestamp = timestamp;
+    m_length = length;
+    return true;
+  }
+
+  /**
+   * Gets the time the frame last read was sent.
+   *
+   * @return the time, in microseconds
+   */
+  public long getTimestamp() {
+    return m_timestamp;
+  }
+
+  /**
+   * Gets the number of LEDs in the frame last read.
+   *
+   * @return the number of LEDs
+   */
+  public int getLength() {
+    return m_length;
+  }
+
+  private long sequenceAt(int offset) {
+    return (long) LEDFrameFileOutput.kLongs.getAcquire(m_map, offset);
+  }
+
+  /**
+   * Prints a line for each frame written to a frame file, with its sequence number, timestamp and
+   * the colors of its first few LEDs, until interrupted.
+   *
+   * @param args the path of the frame file
+   * @throws IOException if the file can't be opened
+   * @throws InterruptedException if interrupted while waiting for a frame
+   */
+  public static void main(String... args) throws IOException, InterruptedException {
+    if (args.length != 1) {
+      System.err.println("Usage: LEDFrameFileReader <frame file>");
+      System.exit(2);
+    }
+
+    var reader = new LEDFrameFileReader(Path.of(args[0]));
+    byte[] frame = new byte[reader.getMaxLength() * 4];
+    var line = new StringBuilder();
+    long seen = 0;
+    while (true) {
+      long latest = reader.getLatestSequence();
+      if (latest == seen || !reader.read(latest, frame)) {
+        Thread.sleep(1);
+        continue;
+      }
+      if (latest != seen + 1 && seen != 0) {
+        System.out.println("(skipped " + (latest - seen - 1) + " frames)");
+      }
+      seen = latest;
+
+      line.setLength(0);
+      line.append(latest).append(" @ ").append(reader.getTimestamp()).append(" us:");
+      for (int led = 0; led < Math.min(reader.getLength(), 16); led++) {
+        int i = led * 4;
+        int rgb = Color.packRGB(frame[i + 2] & 0xFF, frame[i + 1] & 0xFF, frame[i] & 0xFF);
+        line.append(String.format(" %06X", rgb));
+      }
+      System.out.println(line);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Plays back a recording made by an {@link LEDFrameRecorder}, one frame at a time, into an {@link
+ * AddressableLEDBuffer} or straight into an {@link LEDOutput} such as an {@link LEDFrameCapture}.
+ * Each frame is decoded from the one before, so playing a frame costs only as much as the LEDs that
+ * changed in it.
+ *
+ * <p>To watch a recording at its original speed, advance the player by the time since the playback
+ * started each loop, and send the frame on when it changes:
+ *
+ * <pre>
+ *   var player = new LEDFramePlayer(Path.of("match.leds"));
+ *   player.next();
+ *   long offset = WPIUtilJNI.now() - player.getTimestamp();
+ *
+ *   void periodic() {
+ *     if (player.advanceTo(WPIUtilJNI.now() - offset)) {
+ *       player.copyTo(m_buffer);
+ *     }
+ *     m_led.setData(m_buffer);
+ *   }
+ * </pre>
+ *
+ * <p>The recorded frames already had any color correction and power limiting applied, so play them
+ * into an {@link AddressableLED} without its own to see them as they were.
+ */
+public class LEDFramePlayer implements AutoCloseable {
+  private final InputStream m_stream;
+  private byte[] m_frame = new byte[0];
+  private byte[] m_encoded = new byte[0];
+  private int m_length;
+  private long m_timestamp;
+
+  // the header of the next frame, once read ahead by advanceTo()
+  private boolean m_pending;
+  private long m_pendingTimestamp;
+  private int m_pendingLength;
+  private int m_pendingSize;
+
+  /**
+   * Opens a recording.
+   *
+   * @param path the recording
+   * @throws IOException if the file can't be read or isn't a recording
+   */
+  public LEDFramePlayer(Path path) throws IOException {
+    m_stream = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+
+    byte[] magic = m_stream.readNBytes(LEDFrameRecorder.kMagic.length);
+    if (!Arrays.equals(magic, LEDFrameRecorder.kMagic)
+        || m_stream.read() != LEDFrameRecorder.kVersion) {
+      m_stream.close();
+      throw new IOException("Not an LED recording: " + path);
+    }
+  }
+
+  /**
+   * Moves on to the next frame of the recording.
+   *
+   * @return true if there was a next frame; false at the end of the recording
+   * @throws IOException if the recording can't be read or is corrupt
+   */
+  public boolean next() throws IOException {
+    if (!readHeader()) {
+      return false;
+    }
+    readFrame();
+    return true;
+  }
+
+  /**
+   * Moves on to the last frame recorded at or before a time, if that's later than the current
+   * frame.
+   *
+   * @param timestampMicros the time, on the clock of the recording
+   * @return true if the current frame changed
+   * @throws IOException if the recording can't be read or is corrupt
+   */
+  public boolean advanceTo(long timestampMicros) throws IOException {
+    boolean changed = false;
+    while (readHeader() && m_pendingTimestamp <= timestampMicros) {
+      readFrame();
+      changed = true;
+    }
+    return changed;
+  }
+
+  /**
+   * Gets the time the current frame was recorded.
+   *
+   * @return the time from {@link edu.wpi.first.util.WPIUtilJNI#now()} when recorded, in
+   *     microseconds
+   */
+  public long getTimestamp() {
+    return m_timestamp;
+  }
+
+  /**
+   * Gets the number of LEDs in the current frame.
+   *
+   * @return the number of LEDs
+   */
+  public int getLength() {
+    return m_length;
+  }
+
+  /**
+   * Gets the color of an LED in the current frame as a packed 32-bit RGB integer.
+   *
+   * @param index the index of the LED
+   * @return the color, packed as by {@link Color#packRGB(int, int, int)}
+   */
+  public int getPacked(int index) {
+    int i = index * 4;
+    return Color.packRGB(m_frame[i + 2] & 0xFF, m_frame[i + 1] & 0xFF, m_frame[i] & 0xFF);
+  }
+
+  /**
+   * Copies the current frame into a buffer. LEDs past the end of the shorter of the two are left
+   * alone.
+   *
+   * @param buffer the buffer to copy into
+   */
+  public void copyTo(AddressableLEDBuffer buffer) {
+    int length = Math.min(m_length, buffer.getLength());
+    System.arraycopy(m_frame, 0, buffer.m_buffer, 0, length * 4);
+    buffer.markDirty(0, length);
+  }
+
+  /**
+   * Sends the current frame to an output.
+   *
+   * @param output the output
+   */
+  public void sendTo(LEDOutput output) {
+    output.setLength(m_length);
+    output.setData(m_frame);
+  }
+
+  /**
+   * Sends every remaining frame of the recording to an output, as fast as it can.
+   *
+   * @param output the output
+   * @return the number of frames sent
+   * @throws IOException if the recording can't be read or is corrupt
+   */
+  public long replay(LEDOutput output) throws IOException {
+    long count = 0;
+    while (next()) {
+      sendTo(output);
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    m_stream.close();
+  }
+
+  /**
+   * Reads the header of the next frame, unless it has already been read.
+   *
+   * @return true if there is a next frame
+   */
+  private boolean readHeader() throws IOException {
+    if (m_pending) {
+      return true;
+    }
+    int first = m_stream.read();
+    if (first < 0) {
+      return false;
+    }
+    m_pendingTimestamp = m_timestamp + readVarint(first);
+    m_pendingLength = (int) readVarint(m_stream.read());
+    m_pendingSize = (int) readVarint(m_stream.read());
+    if (m_pendingLength < 0 || m_pendingSize < 0) {
+      throw new IOException("Corrupt LED recording");
+    }
+    m_pending = true;
+    return true;
+  }
+
+  /** Reads and decodes the frame whose header was read. */
+  private void readFrame() throws IOException {
+    if (m_frame.length != m_pendingLength * 4) {
+      m_frame = new byte[m_pendingLength * 4]; // a key frame, against all black
+    }
+    if (m_encoded.length < m_pendingSize) {
+      m_encoded = new byte[m_pendingSize];
+    }
+    if (m_stream.readNBytes(m_encoded, 0, m_pendingSize) != m_pendingSize) {
+      throw new EOFException("LED recording ends in the middle of a frame");
+    }
+    try {
+      LEDFrameCodec.decode(m_encoded, 0, m_frame, m_pendingLength);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupt LED recording", e);
+    }
+
+    m_timestamp = m_pendingTimestamp;
+    m_length = m_pendingLength;
+    m_pending = false;
+  }
+
+  /**
+   * Reads the rest of an unsigned LEB128 varint.
+   *
+   * @param first the first byte, already read
+   * @return the value
+   */
+  private long readVarint(int first) throws IOException {
+    long value = 0;
+    int b = first;
+    for (int shift = 0; ; shift += 7) {
+      if (b < 0) {
+        throw new EOFException("LED recording ends in the middle of a frame");
+      }
+      if (shift > 63) {
+        throw new IOException("Corrupt LED recording");
+      }
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      b = m_stream.read();
+    }
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Microseconds;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.RawPublisher;
+import edu.wpi.first.units.Measure;
+import edu.wpi.first.units.Time;
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Arrays;
+
+/**
+ * An {@link LEDOutput} that publishes what the strip shows to NetworkTables, for dashboards and
+ * the DataLog, while passing the frames on to another output such as the roboRIO's LED driver.
+ *
+ * <pre>
+ *   var table = NetworkTableInstance.getDefault().getTable("LEDs");
+ *   var publisher = new LEDFramePublisher(LEDOutput.hal(1), table, Seconds.of(0.1));
+ *   var led = new AddressableLED(publisher);
+ * </pre>
+ *
+ * <p>Frames are published to the raw topic "frame" (type string {@value #kTypeString}) at most
+ * once a period, and only if the strip changed since the last one published, so a static signal
+ * costs little more than its periodic key frames. Each value is a flags byte ({@link #kKeyFrame}
+ * if the frame stands alone), the number of LEDs as an unsigned LEB128 varint, and the frame
+ * encoded as in {@link LEDFrameCodec}: against the previous value published, or for a key frame
+ * against all black. A key frame is published at least once a second, and whenever the number of
+ * LEDs changes, so a dashboard that connects late or misses a value catches up; {@link
+ * #decode(byte[], byte[])} turns the values back into frames.
+ */
+public class LEDFramePublisher implements LEDOutput {
+  /** The type string of the frame topic. */
+  public static final String kTypeString = "LEDFrame";
+
+  /** The flag marking a value that doesn't depend on the value before. */
+  public static final int kKeyFrame = 1;
+
+  private static final long kKeyFrameIntervalMicros = 1_000_000;
+  private static final int kMaxValueHeaderSize = 1 + 5; // flags, then a varint of up to 5 bytes
+
+  private final LEDOutput m_output; // null to only publish
+  private final RawPublisher m_framePublisher;
+  private final long m_periodMicros;
+  private int m_length;
+  private byte[] m_published = new byte[0];
+  private byte[] m_value = new byte[0];
+  private long m_nextPublishMicros;
+  private long m_nextKeyFrameMicros;
+
+  /**
+   * Creates a publisher that passes the frames on to another output.
+   *
+   * @param output where to pass the frames on to; closed when this is closed
+   * @param table the table to publish in
+   * @param period the shortest time between published frames
+   */
+  public LEDFramePublisher(LEDOutput output, NetworkTable table, Measure<Time> period) {
+    m_output = output;
+    m_periodMicros = (long) period.in(Microseconds);
+    // every value is needed to follow the deltas, so don't let NetworkTables drop any
+    m_framePublisher = table.getRawTopic("frame").publish(kTypeString, PubSubOption.sendAll(true));
+  }
+
+  @Override
+  public void setLength(int length) {
+    if (m_output != null) {
+      m_output.setLength(length);
+    }
+    m_length = length;
+  }
+
+  @Override
+  public void setData(byte[] data) {
+    if (m_output != null) {
+      m_output.setData(data);
+    }
+
+    long now = WPIUtilJNI.now();
+    if (now < m_nextPublishMicros) {
+      return;
+    }
+
+    int length = Math.min(m_length, data.length / 4);
+    boolean keyFrame = m_published.length != length * 4 || now >= m_nextKeyFrameMicros;
+    if (keyFrame) {
+      // a key frame is encoded against all black; only a new length needs new arrays
+      if (m_published.length != length * 4) {
+        m_published = new byte[length * 4];
+        m_value = new byte[kMaxValueHeaderSize + LEDFrameCodec.maxEncodedSize(length)];
+      } else {
+        Arrays.fill(m_published, (byte) 0);
+      }
+      m_nextKeyFrameMicros = now + kKeyFrameIntervalMicros;
+    } else if (Arrays.equals(m_published, 0, length * 4, data, 0, length * 4)) {
+      return; // nothing new to show; look again next frame
+    }
+
+    m_value[0] = (byte) (keyFrame ? kKeyFrame : 0);
+    int pos = LEDFrameCodec.writeVarint(m_value, 1, length);
+    pos += LEDFrameCodec.encode(m_published, data, length, m_value, pos);
+    m_framePublisher.set(m_value, 0, pos);
+    System.arraycopy(data, 0, m_published, 0, length * 4);
+    m_nextPublishMicros = now + m_periodMicros;
+  }
+
+  /** Passes on what the output the frames go to takes; this then publishes the same frames. */
+  @Override
+  public boolean isBeforeOutputStages() {
+    return m_output != null && m_output.isBeforeOutputStages();
+  }
+
+  @Override
+  public void setBitTiming(
+      int highTime0NanoSeconds,
+      int lowTime0NanoSeconds,
+      int highTime1NanoSeconds,
+      int lowTime1NanoSeconds) {
+    if (m_output != null) {
+      m_output.setBitTiming(
+          highTime0NanoSeconds, lowTime0NanoSeconds, highTime1NanoSeconds, lowTime1NanoSeconds);
+    }
+  }
+
+  @Override
+  public void setSyncTime(int syncTimeMicroSeconds) {
+    if (m_output != null) {
+      m_output.setSyncTime(syncTimeMicroSeconds);
+    }
+  }
+
+  @Override
+  public void start() {
+    if (m_output != null) {
+      m_output.start();
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (m_output != null) {
+      m_output.stop();
+    }
+  }
+
+  /** Stops publishing and closes the output the frames were passed on to. */
+  @Override
+  public void close() {
+    m_framePublisher.close();
+    if (m_output != null) {
+      m_output.close();
+    }
+  }
+
+  /**
+   * Applies a value published to the frame topic to the frame before it.
+   *
+   * @param value the value published
+   * @param frame the frame the previous value decoded to, BGRx, or null if there is none
+   * @return the new frame: {@code frame} changed in place, or a new array for a key frame
+   * @throws IllegalArgumentException if the value is malformed, or isn't a key frame and doesn't
+   *     follow on from {@code frame}
+   */
+  public static byte[] decode(byte[] value, byte[] frame) {
+    int length = 0;
+    int pos = 1;
+    for (int shift = 0; ; shift += 7) {
+      if (shift > 28 || pos >= value.length) {
+        throw new IllegalArgumentException("Malformed LED frame");
+      }
+      byte b = value[pos++];
+      length |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+
+    if ((value[0] & kKeyFrame) != 0) {
+      frame = new byte[length * 4];
+    } else if (frame == null || frame.length != length * 4) {
+      throw new IllegalArgumentException("LED frame doesn't follow on from the previous frame");
+    }
+    LEDFrameCodec.decode(value, pos, frame, length);
+    return frame;
+  }
+}
@@ -0,0 +1,191 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An {@link LEDOutput} that records every frame sent to it to a file, for reviewing the signals
+ * the drivers saw after a match or a simulation run (see {@link LEDFramePlayer}). It can pass the
+ * frames on to another output, such as the roboRIO's LED driver, so the LEDs keep working while
+ * they are recorded.
+ *
+ * <pre>
+ *   var recorder = new LEDFrameRecorder(LEDOutput.hal(1), Path.of("match.leds"));
+ *   var led = new AddressableLED(recorder);
+ * </pre>
+ *
+ * <p>Frames are stored as their change from the frame before (see {@link LEDFrameCodec}), so a
+ * frame in which nothing changed costs a few bytes, and a long recording of mostly static signals
+ * stays small. The file is a 4 byte magic number ("LEDR") and a version byte, then for each frame:
+ * the time since the frame before (the first frame: since the clock started) in microseconds, the
+ * number of LEDs and the size of the encoded frame, each an unsigned LEB128 varint, followed by the
+ * encoded frame. A frame with a different number of LEDs from the one before is encoded against a
+ * frame of all black.
+ *
+ * <p>If the file can't be written, the recording stops with an error reported to the driver
+ * station, and frames are still passed on.
+ */
+public class LEDFrameRecorder implements LEDOutput {
+  static final byte[] kMagic = {'L', 'E', 'D', 'R'};
+  static final int kVersion = 1;
+  private static final int kMaxRecordHeaderSize = 3 * 10; // three varints of up to 10 bytes
+
+  private final LEDOutput m_output; // null to only record
+  private OutputStream m_stream; // null once the recording has stopped
+  private int m_length;
+  private byte[] m_previous = new byte[0];
+  private byte[] m_record = new byte[0];
+  private long m_lastTimestamp;
+
+  /**
+   * Starts a recording that only records, replacing any file already at the path.
+   *
+   * @param path where to record to
+   * @throws IOException if the file can't be created
+   */
+  public LEDFrameRecorder(Path path) throws IOException {
+    this(null, path);
+  }
+
+  /**
+   * Starts a recording of the frames sent to another output, replacing any file already at the
+   * path.
+   *
+   * @param output where to pass the frames on to; closed when this is closed
+   * @param path where to record to
+   * @throws IOException if the file can't be created
+   */
+  public LEDFrameRecorder(LEDOutput output, Path path) throws IOException {
+    m_output = output;
+    m_stream = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+    m_stream.write(kMagic);
+    m_stream.write(kVersion);
+  }
+
+  @Override
+  public void setLength(int length) {
+    if (m_output != null) {
+      m_output.setLength(length);
+    }
+    m_length = length;
+  }
+
+  @Override
+  public void setData(byte[] data) {
+    if (m_output != null) {
+      m_output.setData(data);
+    }
+    if (m_stream == null) {
+      return;
+    }
+
+    int length = Math.min(m_length, data.length / 4);
+    if (m_previous.length != length * 4) {
+      // a new key frame, against all black
+      m_previous = new byte[length * 4];
+      m_record = new byte[kMaxRecordHeaderSize + LEDFrameCodec.maxEncodedSize(length)];
+    }
+
+    long now = WPIUtilJNI.now();
+    // encode after room for the record header, which needs the encoded size, then close the gap
+    int encodedSize =
+        LEDFrameCodec.encode(m_previous, data, length, m_record, kMaxRecordHeaderSize);
+    int pos = LEDFrameCodec.writeVarint(m_record, 0, now - m_lastTimestamp);
+    pos = LEDFrameCodec.writeVarint(m_record, pos, length);
+    pos = LEDFrameCodec.writeVarint(m_record, pos, encodedSize);
+    System.arraycopy(m_record, kMaxRecordHeaderSize, m_record, pos, encodedSize);
+    m_lastTimestamp = now;
+    System.arraycopy(data, 0, m_previous, 0, length * 4);
+
+    try {
+      m_stream.write(m_record, 0, pos + encodedSize);
+    } catch (IOException e) {
+      stopRecording(e);
+    }
+  }
+
+  /** Passes on what the output the frames go to takes; this then records the same frames. */
+  @Override
+  public boolean isBeforeOutputStages() {
+    return m_output != null && m_output.isBeforeOutputStages();
+  }
+
+  @Override
+  public void setBitTiming(
+      int highTime0NanoSeconds,
+      int lowTime0NanoSeconds,
+      int highTime1NanoSeconds,
+      int lowTime1NanoSeconds) {
+    if (m_output != null) {
+      m_output.setBitTiming(
+          highTime0NanoSeconds, lowTime0NanoSeconds, highTime1NanoSeconds, lowTime1NanoSeconds);
+    }
+  }
+
+  @Override
+  public void setSyncTime(int syncTimeMicroSeconds) {
+    if (m_output != null) {
+      m_output.setSyncTime(syncTimeMicroSeconds);
+    }
+  }
+
+  @Override
+  public void start() {
+    if (m_output != null) {
+      m_output.start();
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (m_output != null) {
+      m_output.stop();
+    }
+  }
+
+  /** Writes any frames still buffered to the file, so the recording so far can be read. */
+  public void flush() {
+    if (m_stream != null) {
+      try {
+        m_stream.flush();
+      } catch (IOException e) {
+        stopRecording(e);
+      }
+    }
+  }
+
+  /** Finishes the recording and closes the output the frames were passed on to. */
+  @Override
+  public void close() {
+    if (m_stream != null) {
+      try {
+        m_stream.close();
+      } catch (IOException e) {
+        DriverStation.reportError("LED recording not finished: " + e.getMessage(), false);
+      }
+      m_stream = null;
+    }
+    if (m_output != null) {
+      m_output.close();
+    }
+  }
+
+  private void stopRecording(IOException e) {
+    DriverStation.reportError("LED recording stopped: " + e.getMessage(), false);
+    try {
+      m_stream.close();
+    } catch (IOException ignored) {
+      // already reported the recording as broken
+    }
+    m_stream = null;
+  }
+}
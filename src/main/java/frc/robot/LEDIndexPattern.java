@@ -0,0 +1,56 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Decides which {@link LEDPalette} entry each LED of a strip shows, for palette-indexed patterns
+ * created with {@link LEDPattern#indexed(LEDIndexPattern, LEDPalette)}. Index patterns write one
+ * byte per LED instead of three color channels, and only need to run again when the indices
+ * themselves change; animating the colors is left to the palette.
+ */
+@FunctionalInterface
+public interface LEDIndexPattern {
+  /**
+   * Writes the palette index of each LED.
+   *
+   * @param indices where to write the index of each LED, as unsigned bytes
+   * @param length the number of LEDs
+   */
+  void applyTo(byte[] indices, int length);
+
+  /**
+   * Gets the earliest time at which this pattern may write different indices from what it writes
+   * now, as for {@link LEDPattern#nextChangeTimeMicros(long)}.
+   *
+   * @param nowMicros the current time
+   * @return the time of the next possible change, in microseconds, or {@link
+   *     LEDPattern#kNeverChanges}
+   */
+  default long nextChangeTimeMicros(long nowMicros) {
+    return nowMicros;
+  }
+
+  /**
+   * Creates an index pattern that spreads the whole palette evenly along the strip once, from the
+   * first entry at the start of the strip to the last entry at the end.
+   *
+   * @return the index pattern
+   */
+  static LEDIndexPattern ramp() {
+    return new LEDIndexPattern() {
+      @Override
+      public void applyTo(byte[] indices, int length) {
+        for (int led = 0; led < length; led++) {
+          indices[led] = (byte) (led * LEDPalette.kSize / length);
+        }
+      }
+
+      @Override
+      public long nextChangeTimeMicros(long nowMicros) {
+        return LEDPattern.kNeverChanges;
+      }
+    };
+  }
+}
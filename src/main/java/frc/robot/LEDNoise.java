@@ -0,0 +1,284 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+/**
+ * Procedural fire, plasma and noise effects for {@link LEDPattern#fire(LEDPalette, int, int)},
+ * {@link LEDPattern#plasma(LEDPalette, edu.wpi.first.units.Measure)} and {@link
+ * LEDPattern#noise(LEDPalette, int, edu.wpi.first.units.Measure)}.
+ *
+ * <p>Everything here runs on integers: trigonometry and noise come from tables built once when the
+ * class loads, positions and blends are fixed-point with 8 fractional bits, and randomness comes
+ * from a small xorshift generator instead of {@link Math#random()}. The effects only decide which
+ * palette entry each LED shows, so the colors are a single lookup per LED.
+ */
+final class LEDNoise {
+  private LEDNoise() {
+    throw new UnsupportedOperationException("This is a utility class!");
+  }
+
+  /**
+   * A shuffle of [0, 255], repeated twice so a lattice coordinate can be added to an entry without
+   * wrapping it first.
+   */
+  private static final int[] kPermutation = new int[512];
+
+  /** One cycle of a sine wave over 256 steps, scaled and shifted to [0, 255]. */
+  private static final int[] kSine = new int[256];
+
+  static {
+    // a fixed seed, so the noise looks the same every time the robot program starts
+    var random = new Random(4237);
+    for (int i = 0; i < 256; i++) {
+      kPermutation[i] = i;
+    }
+    for (int i = 255; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = kPermutation[i];
+      kPermutation[i] = kPermutation[j];
+      kPermutation[j] = swap;
+    }
+    System.arraycopy(kPermutation, 0, kPermutation, 256, 256);
+
+    for (int i = 0; i < 256; i++) {
+      kSine[i] = (int) Math.round(127.5 + 127.5 * Math.sin(2 * Math.PI * i / 256));
+    }
+  }
+
+  /**
+   * Looks up a sine wave.
+   *
+   * @param angle the angle, where 256 is a full turn; any value is accepted and wraps around
+   * @return the sine of the angle, scaled and shifted from [-1, 1] to [0, 255]
+   */
+  static int sine(int angle) {
+    return kSine[angle & 0xFF];
+  }
+
+  /**
+   * Samples two-dimensional value noise: random values on an integer lattice, smoothly
+   * interpolated in between. The noise repeats every 256 units in each direction.
+   *
+   * @param x the first coordinate, in fixed point with 8 fractional bits
+   * @param y the second coordinate, in fixed point with 8 fractional bits
+   * @return the noise value, in [0, 255]
+   */
+  static int valueNoise(int x, int y) {
+    int xi = (x >> Color.kFixedPointShift) & 0xFF;
+    int yi = (y >> Color.kFixedPointShift) & 0xFF;
+    int fx = smoothstep(x & 0xFF);
+    int fy = smoothstep(y & 0xFF);
+
+    int row = kPermutation[yi];
+    int nextRow = kPermutation[yi + 1];
+    int a = kPermutation[row + xi];
+    int b = kPermutation[row + xi + 1];
+    int c = kPermutation[nextRow + xi];
+    int d = kPermutation[nextRow + xi + 1];
+
+    int top = a + (((b - a) * fx) >> Color.kFixedPointShift);
+    int bottom = c + (((d - c) * fx) >> Color.kFixedPointShift);
+    return top + (((bottom - top) * fy) >> Color.kFixedPointShift);
+  }
+
+  /**
+   * Eases a fraction in and out, so interpolated noise has no visible creases at lattice points.
+   *
+   * @param t the fraction, in [0, 255] for [0, 1)
+   * @return the eased fraction, in [0, 256]
+   */
+  private static int smoothstep(int t) {
+    // 3t^2 - 2t^3, in fixed point
+    return (t * t * (3 * Color.kFixedPointOne - 2 * t)) >> (2 * Color.kFixedPointShift);
+  }
+
+  /**
+   * Gets the phase of a repeating animation at the current time.
+   *
+   * @param periodMicros how long the animation takes to repeat
+   * @return the phase, where 256 is a full period
+   */
+  private static int phase(long periodMicros) {
+    return (int) ((WPIUtilJNI.now() % periodMicros) * 256 / periodMicros);
+  }
+
+  /** Plasma: a few sine waves of different wavelengths drifting past each other. */
+  static final class Plasma implements LEDIndexPattern {
+    private final long m_periodMicros;
+
+    /**
+     * Creates a plasma effect.
+     *
+     * @param periodMicros how long the plasma takes to repeat itself
+     */
+    Plasma(long periodMicros) {
+      m_periodMicros = periodMicros;
+    }
+
+    @Override
+    public void applyTo(byte[] indices, int length) {
+      int phase = phase(m_periodMicros);
+      // the waves' wavelengths are 256 divided by how much they turn per LED; the third one
+      // wobbles back and forth instead of drifting
+      int wobble = sine(phase) >> 2;
+
+      for (int led = 0; led < length; led++) {
+        int sum = sine(led * 5 + phase) + sine(led * 11 - 2 * phase) + sine(led * 3 + wobble);
+        indices[led] = (byte) (sum / 3);
+      }
+    }
+  }
+
+  /** Value noise that slowly churns over time, with a finer second octave for detail. */
+  static final class ValueNoise implements LEDIndexPattern {
+    private final int m_step;
+    private final long m_changeMicros;
+
+    /**
+     * Creates a churning noise effect.
+     *
+     * @param featureLength the typical distance between light and dark spots, in LEDs
+     * @param changeMicros how long it takes the noise at any one LED to change to a new value
+     */
+    ValueNoise(int featureLength, long changeMicros) {
+      m_step = Color.kFixedPointOne / Math.max(featureLength, 1);
+      m_changeMicros = changeMicros;
+    }
+
+    @Override
+    public void applyTo(byte[] indices, int length) {
+      // only the lattice coordinate modulo 256 matters, so the time can be truncated
+      int y = (int) ((WPIUtilJNI.now() * Color.kFixedPointOne / m_changeMicros) & 0xFFFFFF);
+
+      for (int led = 0, x = 0; led < length; led++, x += m_step) {
+        // the second octave is offset so its lattice doesn't line up with the first one's
+        int n = 2 * valueNoise(x, y) + valueNoise(2 * x + 0x5A00, 2 * y);
+        indices[led] = (byte) (n / 3);
+      }
+    }
+  }
+
+  /**
+   * Fire: every LED holds a heat that cools over time and rises away from the start of the strip,
+   * while random sparks heat up the LEDs near the start. The heats are simulated in steps at a
+   * fixed rate, so the flames look the same however often the pattern is applied.
+   */
+  static final class Fire implements LEDPattern {
+    /** Time between simulation steps, in microseconds (60 steps per second). */
+    private static final long kStepMicros = 16_667;
+
+    /** The most steps to catch up on at once, after the pattern hasn't been shown for a while. */
+    private static final int kMaxStepsPerFrame = 4;
+
+    /** How many LEDs at the start of the strip sparks can appear on. */
+    private static final int kSparkZone = 7;
+
+    private final LEDPalette m_palette;
+    private final int m_cooling;
+    private final int m_sparking;
+    // keyed by identity, since readers don't override equals; entries go away with their readers
+    private final Map<LEDReader, Flame> m_flames = new WeakHashMap<>();
+    private int m_random = 0x1234567;
+
+    /** The simulation state for one reader. */
+    private static final class Flame {
+      private final int[] m_heat;
+      private final byte[] m_indices;
+      private long m_lastStepMicros;
+
+      private Flame(int length, long nowMicros) {
+        m_heat = new int[length];
+        m_indices = new byte[length];
+        m_lastStepMicros = nowMicros - kStepMicros;
+      }
+    }
+
+    /**
+     * Creates a fire effect.
+     *
+     * @param palette the palette to look heats up in, from cold at entry 0 to hottest at entry 255
+     * @param cooling how fast the flames cool, in [0, 255]; higher values make shorter flames
+     * @param sparking how likely a new spark is each step, in [0, 255]; higher values make a
+     *     busier fire
+     */
+    Fire(LEDPalette palette, int cooling, int sparking) {
+      m_palette = palette;
+      m_cooling = cooling;
+      m_sparking = sparking;
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      int length = reader.getLength();
+      long now = WPIUtilJNI.now();
+
+      var flame = m_flames.get(reader);
+      if (flame == null || flame.m_heat.length != length) {
+        flame = new Flame(length, now);
+        m_flames.put(reader, flame);
+      }
+
+      long steps = (now - flame.m_lastStepMicros) / kStepMicros;
+      if (steps > 0 && length > 0) {
+        flame.m_lastStepMicros += steps * kStepMicros;
+        for (long step = Math.min(steps, kMaxStepsPerFrame); step > 0; step--) {
+          step(flame.m_heat, length);
+        }
+      }
+
+      int[] heat = flame.m_heat;
+      byte[] indices = flame.m_indices;
+      for (int led = 0; led < length; led++) {
+        indices[led] = (byte) heat[led];
+      }
+      m_palette.expand(indices, 0, reader, writer);
+    }
+
+    /**
+     * Runs one step of the simulation.
+     *
+     * @param heat the heat of each LED, in [0, 255]
+     * @param length the number of LEDs
+     */
+    private void step(int[] heat, int length) {
+      // cool every LED a little, so the shorter the strip the faster it has to cool
+      int maxCooling = m_cooling * 10 / length + 2;
+      for (int led = 0; led < length; led++) {
+        heat[led] = Math.max(heat[led] - random(maxCooling + 1), 0);
+      }
+
+      // heat drifts away from the start of the strip and diffuses a little
+      for (int led = length - 1; led >= 2; led--) {
+        heat[led] = (heat[led - 1] + 2 * heat[led - 2]) / 3;
+      }
+
+      if (random(256) < m_sparking) {
+        int led = random(Math.min(kSparkZone, length));
+        heat[led] = Math.min(heat[led] + 160 + random(96), 255);
+      }
+    }
+
+    /**
+     * Gets the next pseudo-random number.
+     *
+     * @param bound the upper bound (exclusive); must be positive
+     * @return a pseudo-random number in [0, bound)
+     */
+    private int random(int bound) {
+      // xorshift32
+      int x = m_random;
+      x ^= x << 13;
+      x ^= x >>> 17;
+      x ^= x << 5;
+      m_random = x;
+      return (int) (((x & 0xFFFFFFFFL) * bound) >>> 32);
+    }
+  }
+}
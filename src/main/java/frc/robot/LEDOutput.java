@@ -0,0 +1,82 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Where an {@link AddressableLED} sends its frames once they have been through its output stages.
+ * On the robot that is the LED driver in the HAL ({@link #hal(int)}); in simulation and tests it
+ * can instead be something that records the frames, such as an {@link LEDFrameCapture}.
+ *
+ * <p>Frames are BGRx data, 4 bytes per LED, as in {@link AddressableLEDBuffer}.
+ */
+public interface LEDOutput extends AutoCloseable {
+  /**
+   * Creates the output for the roboRIO's LED driver.
+   *
+   * @param port the output port to use (Must be a PWM header, not on MXP)
+   * @return the output
+   */
+  static LEDOutput hal(int port) {
+    return new HALLEDOutput(port);
+  }
+
+  /**
+   * Sets the length of the LED strip.
+   *
+   * @param length the strip length
+   */
+  void setLength(int length);
+
+  /**
+   * Sends a frame to the LEDs. The array belongs to the caller and may be reused for the next
+   * frame as soon as this returns, so an output that keeps the frame has to copy it.
+   *
+   * @param data the frame, 4 bytes of BGRx per LED
+   */
+  void setData(byte[] data);
+
+  /**
+   * Checks if the output takes the frames as the buffer holds them, with the colors the patterns
+   * wrote, rather than as the LEDs would show them after the {@link AddressableLED}'s color
+   * correction and power limiting. An output that passes its frames on answers for the output it
+   * passes them to. False by default.
+   *
+   * @return true to be sent the frames before the output stages
+   */
+  default boolean isBeforeOutputStages() {
+    return false;
+  }
+
+  /**
+   * Sets the bit timing, for outputs that drive real LEDs. Does nothing by default.
+   *
+   * @param highTime0NanoSeconds high time for 0 bit
+   * @param lowTime0NanoSeconds low time for 0 bit
+   * @param highTime1NanoSeconds high time for 1 bit
+   * @param lowTime1NanoSeconds low time for 1 bit
+   */
+  default void setBitTiming(
+      int highTime0NanoSeconds,
+      int lowTime0NanoSeconds,
+      int highTime1NanoSeconds,
+      int lowTime1NanoSeconds) {}
+
+  /**
+   * Sets the sync time, for outputs that drive real LEDs. Does nothing by default.
+   *
+   * @param syncTimeMicroSeconds the sync time
+   */
+  default void setSyncTime(int syncTimeMicroSeconds) {}
+
+  /** Starts the output. */
+  void start();
+
+  /** Stops the output. */
+  void stop();
+
+  /** Releases anything the output holds. Does nothing by default. */
+  @Override
+  default void close() {}
+}
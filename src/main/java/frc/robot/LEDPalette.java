@@ -0,0 +1,268 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.units.collections.LongToObjectHashMap;
+import edu.wpi.first.util.WPIUtilJNI;
+
+/**
+ * A table of 256 colors for palette-indexed patterns (see {@link LEDPattern#indexed(
+ * LEDIndexPattern, LEDPalette)}). Indexed patterns only decide which palette entry each LED shows,
+ * so editing the palette recolors every LED using it at the cost of editing at most 256 entries,
+ * however long the strip is. Rotating the palette makes the colors travel along the strip, and
+ * crossfading it fades the whole strip from one set of colors to another.
+ *
+ * <p>Palettes are mutable. A pattern using a palette that is edited while the pattern is displayed
+ * picks up the edit the next time it is applied.
+ */
+public class LEDPalette {
+  /** The number of entries in a palette. */
+  public static final int kSize = 256;
+
+  private final int[] m_colors = new int[kSize]; // packed as by Color.packRGB
+  private final int[] m_rotated = new int[kSize]; // scratch for rotate()
+
+  /** Creates a palette with every entry black. */
+  public LEDPalette() {}
+
+  /**
+   * Creates a palette that fades evenly through a sequence of colors and back to the first, so the
+   * last entry runs smoothly into the first when the palette is rotated.
+   *
+   * @param colors the colors to fade between
+   * @return the palette
+   */
+  public static LEDPalette gradient(Color... colors) {
+    var palette = new LEDPalette();
+    if (colors.length == 0) {
+      return palette;
+    }
+
+    int[] packed = new int[colors.length];
+    for (int i = 0; i < colors.length; i++) {
+      packed[i] = toPacked(colors[i]);
+    }
+
+    for (int entry = 0; entry < kSize; entry++) {
+      // position along the sequence of colors, in fixed point
+      int position = entry * colors.length * Color.kFixedPointOne / kSize;
+      int from = packed[position >> Color.kFixedPointShift];
+      int to = packed[((position >> Color.kFixedPointShift) + 1) % colors.length];
+      palette.m_colors[entry] = lerp(from, to, position & (Color.kFixedPointOne - 1));
+    }
+    return palette;
+  }
+
+  /**
+   * Creates a palette that runs once around the color wheel.
+   *
+   * @param saturation the saturation of the HSV colors, in [0, 255]
+   * @param value the value of the HSV colors, in [0, 255]
+   * @return the palette
+   */
+  public static LEDPalette rainbow(int saturation, int value) {
+    var palette = new LEDPalette();
+    for (int entry = 0; entry < kSize; entry++) {
+      palette.m_colors[entry] = Color.hsvToRgb(entry * 180 / kSize, saturation, value);
+    }
+    return palette;
+  }
+
+  /**
+   * Creates a palette of the colors of heat, for fire effects: black through red, orange and
+   * yellow to white, with the hottest color at the last entry.
+   *
+   * @return the palette
+   */
+  public static LEDPalette heat() {
+    var palette = new LEDPalette();
+    for (int entry = 0; entry < kSize; entry++) {
+      // scale down to [0, 191] so the entries split into thirds of 64, each ramping up a channel
+      int scaled = entry * 191 / 255;
+      int ramp = (scaled & 0x3F) << 2;
+      palette.m_colors[entry] =
+          switch (scaled >> 6) {
+            case 0 -> Color.packRGB(ramp, 0, 0);
+            case 1 -> Color.packRGB(255, ramp, 0);
+            default -> Color.packRGB(255, 255, ramp);
+          };
+    }
+    return palette;
+  }
+
+  /**
+   * Sets an entry of the palette.
+   *
+   * @param index the index of the entry, in [0, 255]
+   * @param color the color
+   */
+  public void set(int index, Color color) {
+    m_colors[index] = toPacked(color);
+  }
+
+  /**
+   * Sets an entry of the palette to a packed 32-bit RGB color.
+   *
+   * @param index the index of the entry, in [0, 255]
+   * @param rgb the color, packed as by {@link Color#packRGB(int, int, int)}
+   */
+  public void setPacked(int index, int rgb) {
+    m_colors[index] = rgb & 0x00FFFFFF;
+  }
+
+  /**
+   * Gets an entry of the palette as a packed 32-bit RGB color.
+   *
+   * @param index the index of the entry, in [0, 255]
+   * @return the color, packed as by {@link Color#packRGB(int, int, int)}
+   */
+  public int getPacked(int index) {
+    return m_colors[index];
+  }
+
+  /**
+   * Copies every entry of another palette into this one.
+   *
+   * @param other the palette to copy
+   */
+  public void copyFrom(LEDPalette other) {
+    System.arraycopy(other.m_colors, 0, m_colors, 0, kSize);
+  }
+
+  /**
+   * Rotates the entries of the palette, so the color at entry {@code i} moves to entry {@code i +
+   * steps}, wrapping around.
+   *
+   * @param steps how many entries to rotate by; may be negative
+   */
+  public void rotate(int steps) {
+    int shift = Math.floorMod(steps, kSize);
+    System.arraycopy(m_colors, 0, m_rotated, shift, kSize - shift);
+    System.arraycopy(m_colors, kSize - shift, m_rotated, 0, shift);
+    System.arraycopy(m_rotated, 0, m_colors, 0, kSize);
+  }
+
+  /**
+   * Sets every entry of this palette to a blend of the same entry in two other palettes. Either
+   * palette may be this one.
+   *
+   * @param from the palette to blend from
+   * @param to the palette to blend to
+   * @param t how far to blend, in [0, 1]; 0 is all {@code from} and 1 is all {@code to}
+   */
+  public void crossfade(LEDPalette from, LEDPalette to, double t) {
+    int fixedT = Math.max(0, Math.min(Color.toFixedPoint(t), Color.kFixedPointOne));
+    for (int entry = 0; entry < kSize; entry++) {
+      m_colors[entry] = lerp(from.m_colors[entry], to.m_colors[entry], fixedT);
+    }
+  }
+
+  /**
+   * Writes the colors for a run of LEDs, looking each LED's palette index up in this palette.
+   *
+   * @param indices the palette index of each LED, as unsigned bytes
+   * @param offset how many entries to rotate the lookup by, as if by {@link #rotate(int)}
+   * @param reader data reader for accessing buffer length
+   * @param writer data writer for setting new LED colors on the buffer
+   */
+  void expand(byte[] indices, int offset, LEDReader reader, LEDWriter writer) {
+    int length = reader.getLength();
+    int[] colors = m_colors;
+    int shift = Math.floorMod(-offset, kSize);
+
+    var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+    if (buffer != null) {
+      int start = LEDBulkOps.contiguousStart(reader);
+      for (int led = 0; led < length; led++) {
+        buffer.setPacked(start + led, colors[((indices[led] & 0xFF) + shift) & 0xFF]);
+      }
+      return;
+    }
+
+    for (int led = 0; led < length; led++) {
+      int rgb = colors[((indices[led] & 0xFF) + shift) & 0xFF];
+      writer.setRGB(
+          led,
+          Color.unpackRGB(rgb, Color.RGBChannel.kRed),
+          Color.unpackRGB(rgb, Color.RGBChannel.kGreen),
+          Color.unpackRGB(rgb, Color.RGBChannel.kBlue));
+    }
+  }
+
+  /**
+   * A pattern that expands the indices of an index pattern through a palette, and optionally
+   * rotates its lookup over time. The indices are kept per buffer length and only rendered again
+   * when the index pattern may have changed, so most frames are a single lookup pass.
+   */
+  static final class IndexedPattern implements LEDPattern {
+    private final LEDIndexPattern m_indices;
+    private final LEDPalette m_palette;
+    private final long m_cyclePeriodMicros; // 0 for no cycling
+    private final LongToObjectHashMap<Indices> m_indicesByLength = new LongToObjectHashMap<>();
+
+    /** The indices rendered for one buffer length. */
+    private static final class Indices {
+      private final byte[] m_values;
+      private long m_validUntilMicros = Long.MIN_VALUE;
+
+      private Indices(int length) {
+        m_values = new byte[length];
+      }
+    }
+
+    /**
+     * Creates a palette-indexed pattern.
+     *
+     * @param indices the index pattern
+     * @param palette the palette to look the indices up in
+     * @param cyclePeriodMicros how long it takes the palette to rotate all the way around, or 0 to
+     *     never rotate it
+     */
+    IndexedPattern(LEDIndexPattern indices, LEDPalette palette, long cyclePeriodMicros) {
+      m_indices = indices;
+      m_palette = palette;
+      m_cyclePeriodMicros = cyclePeriodMicros;
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      int length = reader.getLength();
+      long now = WPIUtilJNI.now();
+
+      var indices = m_indicesByLength.get(length);
+      if (indices == null) {
+        indices = new Indices(length);
+        m_indicesByLength.put(length, indices);
+      }
+      if (now >= indices.m_validUntilMicros) {
+        m_indices.applyTo(indices.m_values, length);
+        indices.m_validUntilMicros = m_indices.nextChangeTimeMicros(now);
+      }
+
+      int offset = 0;
+      if (m_cyclePeriodMicros > 0) {
+        offset = (int) ((now % m_cyclePeriodMicros) * kSize / m_cyclePeriodMicros);
+      }
+      m_palette.expand(indices.m_values, offset, reader, writer);
+    }
+  }
+
+  private static int toPacked(Color color) {
+    // converted the same way as LEDWriter.setLED(int, Color)
+    return Color.packRGB(
+        (int) (color.red * 255), (int) (color.green * 255), (int) (color.blue * 255));
+  }
+
+  private static int lerp(int from, int to, int t) {
+    return Color.lerpRGBFixed(
+        Color.unpackRGB(from, Color.RGBChannel.kRed),
+        Color.unpackRGB(from, Color.RGBChannel.kGreen),
+        Color.unpackRGB(from, Color.RGBChannel.kBlue),
+        Color.unpackRGB(to, Color.RGBChannel.kRed),
+        Color.unpackRGB(to, Color.RGBChannel.kGreen),
+        Color.unpackRGB(to, Color.RGBChannel.kBlue),
+        t);
+  }
+}
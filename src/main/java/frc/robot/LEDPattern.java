@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
+import java.util.function.LongUnaryOperator;
 
 /**
  * An LED pattern controls lights on an LED strip to command patterns of color that may change over
@@ -56,11 +57,11 @@ import java.util.function.DoubleSupplier;
  *   }
  * </code></pre>
  *
- * <p>LED patterns are stateless, and as such can be applied to multiple LED strips (or different
- * sections of the same LED strip, since the roboRIO can only drive a single LED strip). In this
- * example, we split the single buffer into two views - one for the section of the LED strip on the
- * left side of a robot, and another view for the section of LEDs on the right side. The same
- * pattern is able to be applied to both sides.
+ * <p>Most LED patterns are stateless, and as such can be applied to multiple LED strips (or
+ * different sections of the same LED strip, since the roboRIO can only drive a single LED strip).
+ * In this example, we split the single buffer into two views - one for the section of the LED strip
+ * on the left side of a robot, and another view for the section of LEDs on the right side. The
+ * same pattern is able to be applied to both sides.
  *
  * <pre><code>
  *   public class LEDs extends SubsystemBase {
@@ -92,6 +93,21 @@ import java.util.function.DoubleSupplier;
  *     }
  *   }
  * </code></pre>
+ *
+ * <p>A few patterns remember what they showed in earlier frames. {@link #withPersistence(Measure)}
+ * keeps a fading trail and {@link #fire(LEDPalette, int, int)} the heat of its flames for each
+ * buffer or view they are applied to, so they too can be shown on several views at once. That
+ * state is kept in a {@link java.util.WeakHashMap} keyed by the buffer or view, starts out dark the
+ * first time the pattern is applied to it, and lasts until that buffer or view is garbage
+ * collected. Patterns built on top of these keep it per view too: those that render a pattern off
+ * to the side, such as offsets, scrolling, blends and masks, keep a separate scratch buffer for
+ * each view, and the state is kept for that. The exception is a {@link LEDTimeline} crossfade,
+ * which renders both keyframes off to the side, so a keyframe's state while it fades in or out is
+ * separate from its state while it's shown on its own.
+ *
+ * <p>A {@link LEDTimeline} keeps a single start time however many views it is shown on, so they
+ * play in step. It starts when it's first applied, and plays from the beginning again only after
+ * {@link LEDTimeline#restart()}.
  */
 @FunctionalInterface
 public interface LEDPattern {
@@ -131,6 +147,61 @@ public interface LEDPattern {
     applyTo(readWriter, readWriter);
   }
 
+  /**
+   * A {@link #nextChangeTimeMicros(long)} result for patterns whose output never changes, such as
+   * {@link #solid(Color) solid colors} and {@link #gradient(GradientType, Color...) gradients}.
+   */
+  long kNeverChanges = Long.MAX_VALUE;
+
+  /**
+   * Gets the earliest time at which this pattern may write something different from what it writes
+   * now. Code that displays a pattern can use this to skip applying it again while its output
+   * would be the same, which saves both the rendering and the work of sending unchanged LEDs.
+   *
+   * <p>The default implementation assumes the pattern can change at any moment and returns {@code
+   * nowMicros}, which is always correct. The built-in factories and modifiers report tighter times
+   * where they know them; a blinking solid color, for example, only changes when it toggles.
+   *
+   * @param nowMicros the current time, from {@link WPIUtilJNI#now()}
+   * @return the time of the next possible change, in microseconds, or {@link #kNeverChanges}
+   */
+  default long nextChangeTimeMicros(long nowMicros) {
+    return nowMicros;
+  }
+
+  /**
+   * Checks if this pattern always writes the same output to a given buffer, so it only needs to be
+   * applied once.
+   *
+   * @return true if the pattern never changes
+   */
+  default boolean isStatic() {
+    return nextChangeTimeMicros(WPIUtilJNI.now()) == kNeverChanges;
+  }
+
+  /**
+   * Attaches change timing to a pattern written as a lambda, which can't override {@link
+   * #nextChangeTimeMicros(long)} itself.
+   *
+   * @param pattern the pattern
+   * @param nextChangeTimeMicros the implementation of {@link #nextChangeTimeMicros(long)}
+   * @return the pattern, reporting the given change timing
+   */
+  private static LEDPattern withNextChange(
+      LEDPattern pattern, LongUnaryOperator nextChangeTimeMicros) {
+    return new LEDPattern() {
+      @Override
+      public void applyTo(LEDReader reader, LEDWriter writer) {
+        pattern.applyTo(reader, writer);
+      }
+
+      @Override
+      public long nextChangeTimeMicros(long nowMicros) {
+        return nextChangeTimeMicros.applyAsLong(nowMicros);
+      }
+    };
+  }
+
   /**
    * Creates a pattern that displays this one in reverse. Scrolling patterns will scroll in the
    * opposite direction (but at the same speed). It will treat the end of an LED strip as the start,
@@ -145,10 +216,7 @@ public interface LEDPattern {
    * @see AddressableLEDBufferView#reversed()
    */
   default LEDPattern reversed() {
-    return (reader, writer) -> {
-      int bufLen = reader.getLength();
-      applyTo(reader, (i, r, g, b) -> writer.setRGB((bufLen - 1) - i, r, g, b));
-    };
+    return LEDPatternNode.of(this).reversed();
   }
 
   /**
@@ -159,15 +227,7 @@ public interface LEDPattern {
    * @return the offset pattern
    */
   default LEDPattern offsetBy(int offset) {
-    return (reader, writer) -> {
-      int bufLen = reader.getLength();
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            int shiftedIndex = Math.floorMod(i + offset, bufLen);
-            writer.setRGB(shiftedIndex, r, g, b);
-          });
-    };
+    return LEDPatternNode.of(this).offsetBy(offset);
   }
 
   /**
@@ -191,6 +251,8 @@ public interface LEDPattern {
   default LEDPattern scrollAtRelativeSpeed(Measure<Velocity<Dimensionless>> velocity) {
     final double periodMicros = 1 / velocity.in(Value.per(Microsecond));
 
+    final var rotation = new LEDBulkOps.Rotation(this);
+
     return (reader, writer) -> {
       int bufLen = reader.getLength();
       long now = WPIUtilJNI.now();
@@ -199,14 +261,7 @@ public interface LEDPattern {
       double t = (now % (long) periodMicros) / periodMicros;
       int offset = (int) (t * bufLen);
 
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            // floorMod so if the offset is negative, we still get positive outputs
-            int shiftedIndex = Math.floorMod(i + offset, bufLen);
-
-            writer.setRGB(shiftedIndex, r, g, b);
-          });
+      rotation.applyTo(reader, writer, offset);
     };
   }
 
@@ -243,22 +298,21 @@ public interface LEDPattern {
     var metersPerMicro = velocity.in(Meters.per(Microsecond));
     var microsPerLED = (int) (ledSpacing.in(Meters) / metersPerMicro);
 
-    return (reader, writer) -> {
-      int bufLen = reader.getLength();
-      long now = WPIUtilJNI.now();
+    final var rotation = new LEDBulkOps.Rotation(this);
 
+    LEDPattern pattern = (reader, writer) -> {
       // every step in time that's a multiple of microsPerLED will increment the offset by 1
-      var offset = now / microsPerLED;
+      var offset = WPIUtilJNI.now() / microsPerLED;
 
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            // floorMod so if the offset is negative, we still get positive outputs
-            int shiftedIndex = Math.floorMod(i + offset, bufLen);
-
-            writer.setRGB(shiftedIndex, r, g, b);
-          });
+      rotation.applyTo(reader, writer, offset);
     };
+    return withNextChange(
+        pattern,
+        now -> {
+          // the offset only moves on multiples of the time it takes to scroll by one LED
+          long step = Math.abs(microsPerLED);
+          return Math.min(nextChangeTimeMicros(now), (now / step + 1) * step);
+        });
   }
 
   /**
@@ -273,13 +327,23 @@ public interface LEDPattern {
     final long totalTimeMicros = (long) (onTime.in(Microseconds) + offTime.in(Microseconds));
     final long onTimeMicros = (long) onTime.in(Microseconds);
 
-    return (reader, writer) -> {
+    LEDPattern pattern = (reader, writer) -> {
       if (WPIUtilJNI.now() % totalTimeMicros < onTimeMicros) {
         applyTo(reader, writer);
       } else {
         kOff.applyTo(reader, writer);
       }
     };
+    return withNextChange(
+        pattern,
+        now -> {
+          long cycleStart = now - now % totalTimeMicros;
+          if (now - cycleStart < onTimeMicros) {
+            return Math.min(nextChangeTimeMicros(now), cycleStart + onTimeMicros);
+          }
+          // off until the next cycle starts
+          return cycleStart + totalTimeMicros;
+        });
   }
 
   /**
@@ -320,30 +384,51 @@ public interface LEDPattern {
    */
   default LEDPattern breathe(Measure<Time> period) {
     final long periodMicros = (long) period.in(Microseconds);
+    final var dimmer = new LEDBulkOps.RemappingWriter();
 
     return (reader, writer) -> {
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            // How far we are in the cycle, in the range [0, 1)
-            double t = (WPIUtilJNI.now() % periodMicros) / (double) periodMicros;
-            double phase = t * 2 * Math.PI;
-
-            // Apply the cosine function and shift its output from [-1, 1] to [0, 1]
-            // Use cosine so the period starts at 100% brightness
-            double dim = (Math.cos(phase) + 1) / 2.0;
-
-            int output = Color.lerpRGB(0, 0, 0, r, g, b, dim);
-
-            writer.setRGB(
-                i,
-                Color.unpackRGB(output, Color.RGBChannel.kRed),
-                Color.unpackRGB(output, Color.RGBChannel.kGreen),
-                Color.unpackRGB(output, Color.RGBChannel.kBlue));
-          });
+      // How far we are in the cycle, in the range [0, 1)
+      double t = (WPIUtilJNI.now() % periodMicros) / (double) periodMicros;
+      double phase = t * 2 * Math.PI;
+
+      // Apply the cosine function and shift its output from [-1, 1] to [0, 1]
+      // Use cosine so the period starts at 100% brightness
+      double dim = (Math.cos(phase) + 1) / 2.0;
+      int level = Color.toFixedPoint(dim);
+
+      var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        // play the pattern as-is, then dim everything it wrote in a single pass
+        applyTo(reader, writer);
+        LEDBulkOps.scale(buffer, LEDBulkOps.contiguousStart(reader), reader.getLength(), level);
+        return;
+      }
+
+      // the whole strip is at the same brightness, so dimming each channel is a table lookup
+      byte[] dimmed = Color.brightnessTable(level);
+
+      applyTo(reader, dimmer.to(writer, dimmed, 0));
     };
   }
 
+  /**
+   * Creates a pattern that leaves a fading trail behind everything this pattern lights, like the
+   * tail of a comet. Each LED shows the brighter of what this pattern shows now and what the LED
+   * showed before, faded by half for every {@code halfLife} that has passed since. A single moving
+   * LED becomes a comet with a tail that trails off behind it.
+   *
+   * <p>Each buffer or view the pattern is applied to keeps its own trail, so the same pattern can
+   * be displayed on several views at once.
+   *
+   * @param halfLife how long it takes a trail to fade to half brightness
+   * @return the persistent pattern
+   */
+  default LEDPattern withPersistence(Measure<Time> halfLife) {
+    final var persistence = new LEDBulkOps.Persistence(this, halfLife.in(Microseconds));
+
+    return persistence::applyTo;
+  }
+
   /**
    * Creates a pattern that plays this pattern overlaid on another. Anywhere this pattern sets an
    * LED to off (or {@link Color#kBlack}), the base pattern will be displayed instead.
@@ -352,19 +437,7 @@ public interface LEDPattern {
    * @return the combined overlay pattern
    */
   default LEDPattern overlayOn(LEDPattern base) {
-    return (reader, writer) -> {
-      // write the base pattern down first...
-      base.applyTo(reader, writer);
-
-      // ... then, overwrite with the illuminated LEDs from the overlay
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            if (r != 0 || g != 0 || b != 0) {
-              writer.setRGB(i, r, g, b);
-            }
-          });
-    };
+    return LEDPatternNode.of(this).overlayOn(base);
   }
 
   /**
@@ -379,23 +452,7 @@ public interface LEDPattern {
    * @return the blended pattern
    */
   default LEDPattern blend(LEDPattern other) {
-    return (reader, writer) -> {
-      applyTo(reader, writer);
-
-      other.applyTo(
-          reader,
-          (i, r, g, b) -> {
-            int blendedRGB =
-                Color.lerpRGB(
-                    reader.getRed(i), reader.getGreen(i), reader.getBlue(i), r, g, b, 0.5);
-
-            writer.setRGB(
-                i,
-                Color.unpackRGB(blendedRGB, Color.RGBChannel.kRed),
-                Color.unpackRGB(blendedRGB, Color.RGBChannel.kGreen),
-                Color.unpackRGB(blendedRGB, Color.RGBChannel.kBlue));
-          });
-    };
+    return LEDPatternNode.of(this).blend(other);
   }
 
   /**
@@ -410,24 +467,15 @@ public interface LEDPattern {
    * @return the masked pattern
    */
   default LEDPattern mask(LEDPattern mask) {
-    return (reader, writer) -> {
-      // Apply the current pattern down as normal...
-      applyTo(reader, writer);
-
-      mask.applyTo(
-          reader,
-          (i, r, g, b) -> {
-            // ... then perform a bitwise AND operation on each channel to apply the mask
-            writer.setRGB(i, r & reader.getRed(i), g & reader.getGreen(i), b & reader.getBlue(i));
-          });
-    };
+    return LEDPatternNode.of(this).mask(mask);
   }
 
   /**
    * Creates a pattern that plays this one, but at a different brightness. Brightness multipliers
    * are applied per-channel in the RGB space; no HSL or HSV conversions are applied. Multipliers
    * are also uncapped, which may result in the original colors washing out and appearing less
-   * saturated or even just a bright white.
+   * saturated or even just a bright white. Channels are multiplied in 8.8 fixed point, truncating
+   * and saturating at 255.
    *
    * <p>This method is predominantly intended for dimming LEDs to avoid painfully bright or
    * distracting patterns from playing (apologies to the 2024 NE Greater Boston field staff).
@@ -447,22 +495,7 @@ public interface LEDPattern {
    * @return the input pattern, displayed at
    */
   default LEDPattern atBrightness(Measure<Dimensionless> relativeBrightness) {
-    double multiplier = relativeBrightness.in(Value);
-
-    return (reader, writer) -> {
-      applyTo(
-          reader,
-          (i, r, g, b) -> {
-            // Clamp RGB values to keep them in the range [0, 255].
-            // Otherwise, the casts to byte would result in values like 256 wrapping to 0
-
-            writer.setRGB(
-                i,
-                (int) MathUtil.clamp(r * multiplier, 0, 255),
-                (int) MathUtil.clamp(g * multiplier, 0, 255),
-                (int) MathUtil.clamp(b * multiplier, 0, 255));
-          });
-    };
+    return LEDPatternNode.of(this).atBrightness(relativeBrightness);
   }
 
   /** A pattern that turns off all LEDs. */
@@ -475,12 +508,7 @@ public interface LEDPattern {
    * @return the pattern
    */
   static LEDPattern solid(Color color) {
-    return (reader, writer) -> {
-      int bufLen = reader.getLength();
-      for (int led = 0; led < bufLen; led++) {
-        writer.setLED(led, color);
-      }
-    };
+    return new LEDPatternNode.Solid(color);
   }
 
   /**
@@ -552,7 +580,7 @@ public interface LEDPattern {
       return solid(steps.values().iterator().next());
     }
 
-    return (reader, writer) -> {
+    LEDPattern render = (reader, writer) -> {
       int bufLen = reader.getLength();
 
       // precompute relevant positions for this buffer so we don't need to do a check
@@ -570,6 +598,9 @@ public interface LEDPattern {
         writer.setLED(led, currentColor);
       }
     };
+    // the steps only depend on the buffer length, so only render them once per length
+    final var frames = new LEDBulkOps.FrameCache(render);
+    return withNextChange(frames::applyTo, now -> kNeverChanges);
   }
 
   /** Types of gradients. */
@@ -614,8 +645,16 @@ public interface LEDPattern {
     }
 
     final int numSegments = colors.length;
+    final int[] packedColors = new int[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      packedColors[i] =
+          Color.packRGB(
+              (int) (colors[i].red * 255),
+              (int) (colors[i].green * 255),
+              (int) (colors[i].blue * 255));
+    }
 
-    return (reader, writer) -> {
+    LEDPattern render = (reader, writer) -> {
       int bufLen = reader.getLength();
       int ledsPerSegment =
           switch (type) {
@@ -626,18 +665,18 @@ public interface LEDPattern {
       for (int led = 0; led < bufLen; led++) {
         int colorIndex = (led / ledsPerSegment) % numSegments;
         int nextColorIndex = (colorIndex + 1) % numSegments;
-        double t = (led / (double) ledsPerSegment) % 1;
+        int t = ((led % ledsPerSegment) << Color.kFixedPointShift) / ledsPerSegment;
 
-        Color color = colors[colorIndex];
-        Color nextColor = colors[nextColorIndex];
+        int color = packedColors[colorIndex];
+        int nextColor = packedColors[nextColorIndex];
         int gradientColor =
-            Color.lerpRGB(
-                color.red,
-                color.green,
-                color.blue,
-                nextColor.red,
-                nextColor.green,
-                nextColor.blue,
+            Color.lerpRGBFixed(
+                Color.unpackRGB(color, Color.RGBChannel.kRed),
+                Color.unpackRGB(color, Color.RGBChannel.kGreen),
+                Color.unpackRGB(color, Color.RGBChannel.kBlue),
+                Color.unpackRGB(nextColor, Color.RGBChannel.kRed),
+                Color.unpackRGB(nextColor, Color.RGBChannel.kGreen),
+                Color.unpackRGB(nextColor, Color.RGBChannel.kBlue),
                 t);
 
         writer.setRGB(
@@ -647,6 +686,94 @@ public interface LEDPattern {
             Color.unpackRGB(gradientColor, Color.RGBChannel.kBlue));
       }
     };
+    // the gradient only depends on the buffer length, so only render it once per length
+    final var frames = new LEDBulkOps.FrameCache(render);
+    return withNextChange(frames::applyTo, now -> kNeverChanges);
+  }
+
+  /**
+   * Creates a palette-indexed pattern. The index pattern decides which palette entry each LED
+   * shows and the palette decides the colors, so editing the palette (for example with {@link
+   * LEDPalette#rotate(int)} or {@link LEDPalette#crossfade(LEDPalette, LEDPalette, double)})
+   * recolors the whole strip without rendering the pattern again.
+   *
+   * <pre>
+   *   LEDPalette palette = LEDPalette.gradient(Color.kRed, Color.kOrange, Color.kYellow);
+   *   LEDPattern flames = LEDPattern.indexed(LEDIndexPattern.ramp(), palette);
+   * </pre>
+   *
+   * @param indices the index pattern
+   * @param palette the palette to look the indices up in
+   * @return the palette-indexed pattern
+   */
+  static LEDPattern indexed(LEDIndexPattern indices, LEDPalette palette) {
+    return new LEDPalette.IndexedPattern(indices, palette, 0);
+  }
+
+  /**
+   * Creates a palette-indexed pattern that rotates through its palette over time, making the
+   * colors travel along the strip while the indices stay put. For example, a rainbow that cycles
+   * along the strip once per second and only costs a lookup per LED each frame:
+   *
+   * <pre>
+   *   LEDPattern.paletteCycle(LEDIndexPattern.ramp(), LEDPalette.rainbow(255, 255), Seconds.of(1));
+   * </pre>
+   *
+   * @param indices the index pattern
+   * @param palette the palette to look the indices up in
+   * @param period how long it takes to rotate all the way through the palette
+   * @return the cycling palette-indexed pattern
+   */
+  static LEDPattern paletteCycle(
+      LEDIndexPattern indices, LEDPalette palette, Measure<Time> period) {
+    return new LEDPalette.IndexedPattern(indices, palette, (long) period.in(Microseconds));
+  }
+
+  /**
+   * Creates a pattern of flickering flames rising from the start of the strip. Each buffer or view
+   * the pattern is applied to burns its own fire. For example, a fire in the colors of heat:
+   *
+   * <pre>
+   *   LEDPattern.fire(LEDPalette.heat(), 55, 120);
+   * </pre>
+   *
+   * @param palette the palette to color the flames with, from cold at entry 0 to hottest at entry
+   *     255
+   * @param cooling how fast the flames cool, in [0, 255]; higher values make shorter flames
+   * @param sparking how likely a new spark is each step, in [0, 255]; higher values make a busier
+   *     fire
+   * @return the fire pattern
+   */
+  static LEDPattern fire(LEDPalette palette, int cooling, int sparking) {
+    return new LEDNoise.Fire(palette, cooling, sparking);
+  }
+
+  /**
+   * Creates a pattern of plasma: waves of color that drift past each other and repeat over a
+   * period.
+   *
+   * @param palette the palette to color the plasma with; a palette that wraps around smoothly,
+   *     like {@link LEDPalette#rainbow(int, int)} or {@link LEDPalette#gradient(Color...)}, gives
+   *     the smoothest waves
+   * @param period how long it takes the plasma to repeat itself
+   * @return the plasma pattern
+   */
+  static LEDPattern plasma(LEDPalette palette, Measure<Time> period) {
+    return indexed(new LEDNoise.Plasma((long) period.in(Microseconds)), palette);
+  }
+
+  /**
+   * Creates a pattern of smooth random noise that slowly churns over time, like a flickering
+   * candle or rippling water.
+   *
+   * @param palette the palette to color the noise with; the middle entries are used the most
+   * @param featureLength the typical distance between light and dark spots, in LEDs
+   * @param changeTime how long it takes the noise at any one LED to change to a new value
+   * @return the noise pattern
+   */
+  static LEDPattern noise(LEDPalette palette, int featureLength, Measure<Time> changeTime) {
+    return indexed(
+        new LEDNoise.ValueNoise(featureLength, (long) changeTime.in(Microseconds)), palette);
   }
 
   /**
@@ -658,12 +785,13 @@ public interface LEDPattern {
    * @return the rainbow pattern
    */
   static LEDPattern rainbow(int saturation, int value) {
-    return (reader, writer) -> {
+    LEDPattern pattern = (reader, writer) -> {
       int bufLen = reader.getLength();
       for (int i = 0; i < bufLen; i++) {
         int hue = ((i * 180) / bufLen) % 180;
         writer.setHSV(i, hue, saturation, value);
       }
     };
+    return withNextChange(pattern, now -> kNeverChanges);
   }
 }
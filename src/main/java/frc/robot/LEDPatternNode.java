@@ -0,0 +1,487 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Value;
+
+import edu.wpi.first.units.Dimensionless;
+import edu.wpi.first.units.Measure;
+
+/**
+ * The pattern graph built by the {@link LEDPattern} combinators. Instead of wrapping the previous
+ * pattern in another lambda, {@link LEDPattern#reversed()}, {@link LEDPattern#offsetBy(int)},
+ * {@link LEDPattern#atBrightness(Measure)}, {@link LEDPattern#overlayOn(LEDPattern)}, {@link
+ * LEDPattern#blend(LEDPattern)} and {@link LEDPattern#mask(LEDPattern)} return nodes of this graph,
+ * and each node simplifies the graph as it is extended:
+ *
+ * <ul>
+ *   <li>any run of reversals, offsets and brightness changes is fused into a single {@link
+ *       Transform}, so it costs one remapping writer per LED however long the chain is: {@code
+ *       reversed().reversed()} cancels out, consecutive offsets add up and brightness multipliers
+ *       multiply
+ *   <li>a {@link Solid} color absorbs reversals and offsets, and brightness changes become a
+ *       different solid color
+ *   <li>overlays, blends and masks of solid colors become solid colors, and masking with white is
+ *       dropped
+ * </ul>
+ *
+ * <p>Patterns from anywhere else, such as lambdas or the animated factories, become opaque {@link
+ * Source} leaves. The graph can be inspected with {@link #toString()}.
+ */
+abstract class LEDPatternNode implements LEDPattern {
+  /**
+   * Gets a pattern as a node of the graph.
+   *
+   * @param pattern the pattern
+   * @return the pattern itself if it is already a node, otherwise a leaf wrapping it
+   */
+  static LEDPatternNode of(LEDPattern pattern) {
+    return pattern instanceof LEDPatternNode node ? node : new Source(pattern);
+  }
+
+  /**
+   * Gets the channel lookup table for a brightness multiplier. Channels are multiplied in the same
+   * fixed point as {@link LEDBulkOps#scale(byte[], int, int, int)}, so a pattern comes out the same
+   * whether it is scaled in bulk on a buffer or LED by LED on a view.
+   *
+   * @param multiplier the brightness multiplier
+   * @return a 256-entry table of unsigned channel values, saturating at 255
+   */
+  static byte[] brightnessTable(double multiplier) {
+    int fixedPoint = Color.toFixedPoint(multiplier);
+    if (fixedPoint <= Color.kFixedPointOne) {
+      return Color.brightnessTable(fixedPoint);
+    }
+    // brightening; clamped as the bulk operation clamps it, which keeps the products inside an int
+    int m = Math.min(fixedPoint, 255 * Color.kFixedPointOne);
+    byte[] table = new byte[256];
+    for (int c = 0; c < 256; c++) {
+      table[c] = (byte) Math.min((c * m) >> Color.kFixedPointShift, 255);
+    }
+    return table;
+  }
+
+  @Override
+  public LEDPattern reversed() {
+    return Transform.create(this, true, 0, 1.0);
+  }
+
+  @Override
+  public LEDPattern offsetBy(int offset) {
+    return Transform.create(this, false, offset, 1.0);
+  }
+
+  @Override
+  public LEDPattern atBrightness(Measure<Dimensionless> relativeBrightness) {
+    return Transform.create(this, false, 0, relativeBrightness.in(Value));
+  }
+
+  @Override
+  public LEDPattern overlayOn(LEDPattern base) {
+    return new Combine(Combine.Op.kOverlay, this, of(base));
+  }
+
+  @Override
+  public LEDPattern blend(LEDPattern other) {
+    return new Combine(Combine.Op.kBlend, this, of(other));
+  }
+
+  @Override
+  public LEDPattern mask(LEDPattern mask) {
+    var maskNode = of(mask);
+    if (maskNode instanceof Solid solid && solid.m_rgb == 0xFFFFFF) {
+      return this; // masking with white keeps every channel as it is
+    }
+    return new Combine(Combine.Op.kMask, this, maskNode);
+  }
+
+  /** A leaf wrapping a pattern that isn't part of the graph. */
+  static final class Source extends LEDPatternNode {
+    private final LEDPattern m_pattern;
+
+    private Source(LEDPattern pattern) {
+      m_pattern = pattern;
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      m_pattern.applyTo(reader, writer);
+    }
+
+    @Override
+    public long nextChangeTimeMicros(long nowMicros) {
+      return m_pattern.nextChangeTimeMicros(nowMicros);
+    }
+
+    @Override
+    public String toString() {
+      return "pattern";
+    }
+  }
+
+  /** A single color along the entire length of the LED strip. */
+  static final class Solid extends LEDPatternNode {
+    private final int m_rgb; // packed as by Color.packRGB
+    private final int m_red;
+    private final int m_green;
+    private final int m_blue;
+
+    /**
+     * Creates a solid color node.
+     *
+     * @param color the color
+     */
+    Solid(Color color) {
+      // converted the same way as LEDWriter.setLED(int, Color)
+      this(
+          Color.packRGB(
+              (int) (color.red * 255), (int) (color.green * 255), (int) (color.blue * 255)));
+    }
+
+    private Solid(int rgb) {
+      m_rgb = rgb;
+      m_red = Color.unpackRGB(rgb, Color.RGBChannel.kRed);
+      m_green = Color.unpackRGB(rgb, Color.RGBChannel.kGreen);
+      m_blue = Color.unpackRGB(rgb, Color.RGBChannel.kBlue);
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      int bufLen = reader.getLength();
+      for (int led = 0; led < bufLen; led++) {
+        writer.setRGB(led, m_red, m_green, m_blue);
+      }
+    }
+
+    @Override
+    public long nextChangeTimeMicros(long nowMicros) {
+      return kNeverChanges;
+    }
+
+    @Override
+    public LEDPattern reversed() {
+      return this;
+    }
+
+    @Override
+    public LEDPattern offsetBy(int offset) {
+      return this;
+    }
+
+    @Override
+    public LEDPattern atBrightness(Measure<Dimensionless> relativeBrightness) {
+      byte[] scaled = brightnessTable(relativeBrightness.in(Value));
+      return new Solid(
+          Color.packRGB(scaled[m_red] & 0xFF, scaled[m_green] & 0xFF, scaled[m_blue] & 0xFF));
+    }
+
+    @Override
+    public LEDPattern overlayOn(LEDPattern base) {
+      // a lit solid color covers the whole base, and an unlit one shows all of it
+      return m_rgb != 0 ? this : of(base);
+    }
+
+    @Override
+    public LEDPattern blend(LEDPattern other) {
+      if (of(other) instanceof Solid solid) {
+        return new Solid(
+            Color.lerpRGBFixed(
+                m_red,
+                m_green,
+                m_blue,
+                solid.m_red,
+                solid.m_green,
+                solid.m_blue,
+                Color.kFixedPointOne / 2));
+      }
+      return super.blend(other);
+    }
+
+    @Override
+    public LEDPattern mask(LEDPattern mask) {
+      if (of(mask) instanceof Solid solid) {
+        return new Solid(m_rgb & solid.m_rgb);
+      }
+      return super.mask(mask);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("solid(#%06X)", m_rgb);
+    }
+  }
+
+  /**
+   * A pattern reversed, then offset, then changed in brightness; any chain of {@link #reversed()},
+   * {@link #offsetBy(int)} and {@link #atBrightness(Measure)} reduces to one of these.
+   */
+  static final class Transform extends LEDPatternNode {
+    private final LEDPatternNode m_source;
+    private final boolean m_reversed;
+    private final int m_offset;
+    private final double m_multiplier;
+    private final int m_fixedPointMultiplier;
+    private final byte[] m_scaled; // channel lookup table for m_multiplier, or null for 1.0
+    private final LEDBulkOps.Rotation m_rotation; // applies the offset, or null for none
+    private final LEDBulkOps.RemappingWriter m_remapper = new LEDBulkOps.RemappingWriter();
+
+    private Transform(LEDPatternNode source, boolean reversed, int offset, double multiplier) {
+      m_source = source;
+      m_reversed = reversed;
+      m_offset = offset;
+      m_multiplier = multiplier;
+      m_fixedPointMultiplier = Color.toFixedPoint(multiplier);
+      // the multiplier never changes, so work out every possible channel value up front
+      m_scaled = multiplier == 1.0 ? null : brightnessTable(multiplier);
+      // offsets are applied last, by rotating the rest of the transform's output
+      m_rotation =
+          offset == 0 ? null : new LEDBulkOps.Rotation(create(source, reversed, 0, multiplier));
+    }
+
+    /**
+     * Creates the transform, or just returns the source if the transform does nothing.
+     *
+     * @param source the pattern to transform
+     * @param reversed whether to reverse the pattern
+     * @param offset how many LEDs to offset by, after reversing
+     * @param multiplier the brightness multiplier
+     * @return the transformed pattern
+     */
+    private static LEDPatternNode create(
+        LEDPatternNode source, boolean reversed, int offset, double multiplier) {
+      if (!reversed && offset == 0 && multiplier == 1.0) {
+        return source;
+      }
+      return new Transform(source, reversed, offset, multiplier);
+    }
+
+    @Override
+    public LEDPattern reversed() {
+      // the LED written to floorMod(i + offset) moves to (length - 1) - floorMod(i + offset),
+      // which is where the reversed source offset the other way would put it
+      return create(m_source, !m_reversed, -m_offset, m_multiplier);
+    }
+
+    @Override
+    public LEDPattern offsetBy(int offset) {
+      return create(m_source, m_reversed, m_offset + offset, m_multiplier);
+    }
+
+    @Override
+    public LEDPattern atBrightness(Measure<Dimensionless> relativeBrightness) {
+      double multiplier = relativeBrightness.in(Value);
+      // both multipliers dim or both brighten, so the first can't saturate a channel that the
+      // second would have brought back into range; one multiplication does the same job
+      if ((m_multiplier <= 1.0) == (multiplier <= 1.0)) {
+        return create(m_source, m_reversed, m_offset, m_multiplier * multiplier);
+      }
+      return super.atBrightness(relativeBrightness);
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      int bufLen = reader.getLength();
+      if (bufLen == 0) {
+        return;
+      }
+      if (m_offset % bufLen != 0) {
+        m_rotation.applyTo(reader, writer, m_offset);
+        return;
+      }
+
+      boolean reversed = m_reversed;
+      byte[] scaled = m_scaled;
+
+      if (!reversed) {
+        if (scaled == null) {
+          m_source.applyTo(reader, writer);
+          return;
+        }
+
+        var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+        if (buffer != null) {
+          // play the pattern as-is, then scale everything it wrote in a single pass
+          m_source.applyTo(reader, writer);
+          LEDBulkOps.scale(
+              buffer, LEDBulkOps.contiguousStart(reader), bufLen, m_fixedPointMultiplier);
+          return;
+        }
+      }
+
+      // one writer moves and scales each LED, however many modifiers were fused into this node.
+      // The table is clamped to [0, 255]; otherwise, the casts to byte would result in values like
+      // 256 wrapping to 0
+      m_source.applyTo(reader, m_remapper.to(writer, scaled, reversed ? bufLen : 0));
+    }
+
+    @Override
+    public long nextChangeTimeMicros(long nowMicros) {
+      return m_source.nextChangeTimeMicros(nowMicros);
+    }
+
+    @Override
+    public String toString() {
+      var description = new StringBuilder(m_source.toString());
+      if (m_reversed) {
+        description.append(".reversed()");
+      }
+      if (m_offset != 0) {
+        description.append(".offsetBy(").append(m_offset).append(')');
+      }
+      if (m_multiplier != 1.0) {
+        description.append(".atBrightness(").append(m_multiplier).append(')');
+      }
+      return description.toString();
+    }
+  }
+
+  /** Two patterns combined LED by LED. */
+  static final class Combine extends LEDPatternNode {
+    /** Ways of combining two patterns. */
+    enum Op {
+      /** {@link LEDPattern#overlayOn(LEDPattern)}: the second shows where the first is off. */
+      kOverlay,
+      /** {@link LEDPattern#blend(LEDPattern)}: the average of both patterns. */
+      kBlend,
+      /** {@link LEDPattern#mask(LEDPattern)}: the bitwise AND of both patterns. */
+      kMask
+    }
+
+    private final Op m_op;
+    private final LEDPatternNode m_pattern;
+    private final LEDPatternNode m_other;
+    private final LEDBulkOps.Scratch m_scratch = new LEDBulkOps.Scratch();
+    private final Combiner m_combiner = new Combiner();
+
+    /**
+     * Writes each LED of one pattern combined with what the other pattern already wrote, for
+     * writers the bulk operations can't be used on. Kept by the node and pointed at the reader and
+     * writer of each call, since a lambda capturing them would be a new object every frame.
+     */
+    private final class Combiner implements LEDWriter {
+      private LEDReader m_reader;
+      private LEDWriter m_writer;
+
+      private Combiner to(LEDReader reader, LEDWriter writer) {
+        m_reader = reader;
+        m_writer = writer;
+        return this;
+      }
+
+      @Override
+      public void setRGB(int i, int r, int g, int b) {
+        switch (m_op) {
+          case kOverlay -> {
+            if (r != 0 || g != 0 || b != 0) {
+              m_writer.setRGB(i, r, g, b);
+            }
+          }
+          case kBlend -> {
+            int current = m_reader.getPacked(i);
+            int blendedRGB =
+                Color.lerpRGBFixed(
+                    Color.unpackRGB(current, Color.RGBChannel.kRed),
+                    Color.unpackRGB(current, Color.RGBChannel.kGreen),
+                    Color.unpackRGB(current, Color.RGBChannel.kBlue),
+                    r,
+                    g,
+                    b,
+                    Color.kFixedPointOne / 2);
+
+            m_writer.setRGB(
+                i,
+                Color.unpackRGB(blendedRGB, Color.RGBChannel.kRed),
+                Color.unpackRGB(blendedRGB, Color.RGBChannel.kGreen),
+                Color.unpackRGB(blendedRGB, Color.RGBChannel.kBlue));
+          }
+          case kMask -> {
+            // perform a bitwise AND operation on each channel to apply the mask
+            int masked = m_reader.getPacked(i) & Color.packRGB(r, g, b);
+            m_writer.setRGB(
+                i,
+                Color.unpackRGB(masked, Color.RGBChannel.kRed),
+                Color.unpackRGB(masked, Color.RGBChannel.kGreen),
+                Color.unpackRGB(masked, Color.RGBChannel.kBlue));
+          }
+        }
+      }
+    }
+
+    private Combine(Op op, LEDPatternNode pattern, LEDPatternNode other) {
+      m_op = op;
+      m_pattern = pattern;
+      m_other = other;
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      switch (m_op) {
+        case kOverlay -> overlay(reader, writer);
+        case kBlend -> blend(reader, writer);
+        case kMask -> mask(reader, writer);
+      }
+    }
+
+    private void overlay(LEDReader reader, LEDWriter writer) {
+      // write the base pattern down first...
+      m_other.applyTo(reader, writer);
+
+      // ... then, overwrite with the illuminated LEDs from the overlay
+      m_pattern.applyTo(reader, m_combiner.to(reader, writer));
+    }
+
+    private void blend(LEDReader reader, LEDWriter writer) {
+      m_pattern.applyTo(reader, writer);
+
+      var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        // render the other pattern off to the side, then average the two in a single pass
+        int bufLen = reader.getLength();
+        var otherData = m_scratch.get(reader);
+        m_other.applyTo(otherData);
+        LEDBulkOps.lerp(
+            buffer, LEDBulkOps.contiguousStart(reader), otherData, 0, bufLen, LEDBulkOps.kOne / 2);
+        return;
+      }
+
+      m_other.applyTo(reader, m_combiner.to(reader, writer));
+    }
+
+    private void mask(LEDReader reader, LEDWriter writer) {
+      // Apply the current pattern down as normal...
+      m_pattern.applyTo(reader, writer);
+
+      var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        // ... then render the mask off to the side and AND it with the buffer in a single pass
+        int bufLen = reader.getLength();
+        var maskData = m_scratch.get(reader);
+        m_other.applyTo(maskData);
+        LEDBulkOps.and(buffer, LEDBulkOps.contiguousStart(reader), maskData, 0, bufLen);
+        return;
+      }
+
+      // ... then mask each LED as the mask pattern writes it
+      m_other.applyTo(reader, m_combiner.to(reader, writer));
+    }
+
+    @Override
+    public long nextChangeTimeMicros(long nowMicros) {
+      return Math.min(
+          m_pattern.nextChangeTimeMicros(nowMicros), m_other.nextChangeTimeMicros(nowMicros));
+    }
+
+    @Override
+    public String toString() {
+      String name =
+          switch (m_op) {
+            case kOverlay -> "overlayOn";
+            case kBlend -> "blend";
+            case kMask -> "mask";
+          };
+      return m_pattern + "." + name + "(" + m_other + ")";
+    }
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+/**
+ * Limits the current drawn by an LED strip to a budget, to keep a long strip at full white from
+ * browning out the robot. The current is estimated from the sum of all channel values in the frame
+ * being sent, and if it is over budget the whole frame is dimmed evenly until it isn't.
+ *
+ * <p>The estimate is kept up to date incrementally: only the LEDs written since the last frame are
+ * rescanned, so a mostly static strip costs next to nothing to monitor.
+ *
+ * <p>Each channel of a WS2812B draws roughly 20 mA at full brightness, and each LED draws about 1
+ * mA even when off; other LEDs can be described with {@link #LEDPowerLimiter(double, double,
+ * double)}.
+ */
+public class LEDPowerLimiter {
+  private final double m_budgetMilliamps;
+  private final double m_milliampsPerChannel;
+  private final double m_idleMilliampsPerLED;
+
+  private short[] m_ledSums = new short[0]; // sum of the 3 channels of each LED, as last seen
+  private long m_channelSum; // sum of m_ledSums
+  private int m_multiplier = LEDBulkOps.kOne; // fixed-point dimming applied to the last frame
+  private byte[] m_limitedData = new byte[0];
+
+  /**
+   * Creates a power limiter for WS2812B LEDs.
+   *
+   * @param budgetMilliamps the maximum current the strip may draw, in milliamps
+   */
+  public LEDPowerLimiter(double budgetMilliamps) {
+    this(budgetMilliamps, 20.0, 1.0);
+  }
+
+  /**
+   * Creates a power limiter.
+   *
+   * @param budgetMilliamps the maximum current the strip may draw, in milliamps
+   * @param milliampsPerChannel current drawn by one color channel of one LED at full brightness
+   * @param idleMilliampsPerLED current drawn by one LED that is turned off
+   */
+  public LEDPowerLimiter(
+      double budgetMilliamps, double milliampsPerChannel, double idleMilliampsPerLED) {
+    m_budgetMilliamps = budgetMilliamps;
+    m_milliampsPerChannel = milliampsPerChannel;
+    m_idleMilliampsPerLED = idleMilliampsPerLED;
+  }
+
+  /**
+   * Gets the estimated current the last frame would have drawn without limiting.
+   *
+   * @return the requested current, in milliamps
+   */
+  public double getRequestedMilliamps() {
+    return milliamps(m_channelSum);
+  }
+
+  /**
+   * Gets the estimated current drawn by the last frame as it was sent to the LEDs.
+   *
+   * @return the output current, in milliamps
+   */
+  public double getOutputMilliamps() {
+    return milliamps((m_channelSum * m_multiplier) >> Color.kFixedPointShift);
+  }
+
+  /**
+   * Checks if the last frame was dimmed to stay within the budget.
+   *
+   * @return true if the last frame was dimmed
+   */
+  public boolean isLimiting() {
+    return m_multiplier < LEDBulkOps.kOne;
+  }
+
+  private double milliamps(long channelSum) {
+    return m_ledSums.length * m_idleMilliampsPerLED
+        + channelSum * m_milliampsPerChannel / 255.0;
+  }
+
+  /**
+   * Updates the current estimate for the LEDs that changed, and dims the frame if it is over
+   * budget.
+   *
+   * @param data the BGRx frame about to be sent
+   * @param dirtyStart index of the first LED that may have changed since the last frame
+   * @param dirtyEnd index after the last LED that may have changed since the last frame
+   * @return the data to send: {@code data} itself, or a dimmed copy of it
+   */
+  byte[] limit(byte[] data, int dirtyStart, int dirtyEnd) {
+    int length = data.length / 4;
+    if (m_ledSums.length != length) {
+      // first frame, or the strip changed length; start over with the whole strip
+      m_ledSums = new short[length];
+      m_channelSum = 0;
+      dirtyStart = 0;
+      dirtyEnd = length;
+    }
+
+    for (int led = dirtyStart; led < dirtyEnd; led++) {
+      int i = led * 4;
+      int sum = (data[i] & 0xFF) + (data[i + 1] & 0xFF) + (data[i + 2] & 0xFF);
+      m_channelSum += sum - m_ledSums[led];
+      m_ledSums[led] = (short) sum;
+    }
+
+    // budget left for the channels once every LED's idle draw is paid for, as a channel sum
+    double channelMilliamps = m_budgetMilliamps - length * m_idleMilliampsPerLED;
+    long channelBudget = (long) (channelMilliamps * 255.0 / m_milliampsPerChannel);
+    if (m_channelSum <= channelBudget) {
+      m_multiplier = LEDBulkOps.kOne;
+      return data;
+    }
+
+    m_multiplier = (int) Math.max(0, (channelBudget << Color.kFixedPointShift) / m_channelSum);
+    if (m_limitedData.length != data.length) {
+      m_limitedData = new byte[data.length];
+    }
+    System.arraycopy(data, 0, m_limitedData, 0, data.length);
+    LEDBulkOps.scale(m_limitedData, 0, length, m_multiplier);
+    return m_limitedData;
+  }
+}
@@ -4,6 +4,8 @@
 
 package frc.robot;
 
+import java.util.Objects;
+
 // import edu.wpi.first.wpilibj.util.Color;
 // import edu.wpi.first.wpilibj.util.Color8Bit;
 
@@ -62,6 +64,38 @@ public interface LEDReader {
    */
   int getBlue(int index);
 
+  /**
+   * Gets the color of a particular LED in the buffer as a packed 32-bit RGB integer, without
+   * allocating a {@code Color} object or reading each channel separately.
+   *
+   * @param index the index of the LED
+   * @return the LED color, packed as by {@link Color#packRGB(int, int, int)}
+   * @throws IndexOutOfBoundsException if the index is negative or greater than {@link #getLength()}
+   */
+  default int getPacked(int index) {
+    return Color.packRGB(getRed(index), getGreen(index), getBlue(index));
+  }
+
+  /**
+   * Reads the colors of a run of LEDs into an array as packed 32-bit RGB integers. This is the
+   * cheapest way to snapshot part of a buffer, since implementations can check the bounds once for
+   * the whole run.
+   *
+   * @param start the index of the first LED to read
+   * @param dst the array to read the colors into, packed as by {@link Color#packRGB(int, int, int)}
+   * @param offset the position in {@code dst} for the color of the first LED
+   * @param length the number of LEDs to read
+   * @throws IndexOutOfBoundsException if the run of LEDs is not within the buffer, or the array is
+   *     too short to hold it
+   */
+  default void readPacked(int start, int[] dst, int offset, int length) {
+    Objects.checkFromIndexSize(start, length, getLength());
+    Objects.checkFromIndexSize(offset, length, dst.length);
+    for (int i = 0; i < length; i++) {
+      dst[offset + i] = getPacked(start + i);
+    }
+  }
+
   /**
    * A functional interface that allows for iteration over an LED buffer without manually writing an
    * indexed for-loop.
@@ -96,4 +130,33 @@ public interface LEDReader {
       iterator.accept(i, getRed(i), getGreen(i), getBlue(i));
     }
   }
+
+  /**
+   * A functional interface that allows for iteration over an LED buffer with each color packed
+   * into a single integer.
+   */
+  @FunctionalInterface
+  interface IndexedPackedColorIterator {
+    /**
+     * Accepts an index of an LED in the buffer and the currently stored color for that LED.
+     *
+     * @param index the index of the LED in the buffer
+     * @param rgb the color currently in the buffer at index {@code i}, packed as by {@link
+     *     Color#packRGB(int, int, int)}
+     */
+    void accept(int index, int rgb);
+  }
+
+  /**
+   * Like {@link #forEach(IndexedColorIterator)}, but passes each color packed into a single integer
+   * so it only needs to be read from the buffer once.
+   *
+   * @param iterator the iterator function to call for each LED in the buffer.
+   */
+  default void forEachPacked(IndexedPackedColorIterator iterator) {
+    int bufLen = getLength();
+    for (int i = 0; i < bufLen; i++) {
+      iterator.accept(i, getPacked(i));
+    }
+  }
 }
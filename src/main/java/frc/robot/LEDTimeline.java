@@ -0,0 +1,295 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Microseconds;
+
+import edu.wpi.first.units.Measure;
+import edu.wpi.first.units.Time;
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Arrays;
+
+/**
+ * A light show laid out on a timeline of keyframes, played as a single pattern. Each keyframe is
+ * a pattern (or a fixed frame of colors) that the show reaches at some time after it starts, and an
+ * easing that says how the show gets there from the keyframe before: cutting over at once, or
+ * crossfading over the time between the two keyframes.
+ *
+ * <pre>
+ *   LEDTimeline show = new LEDTimeline()
+ *       .at(Seconds.of(0), LEDPattern.solid(Color.kRed))
+ *       .at(Seconds.of(2), LEDPattern.solid(Color.kBlue), LEDTimeline.Easing.kEaseInOut)
+ *       .at(Seconds.of(3), LEDPattern.rainbow(255, 255).blink(Seconds.of(0.25)))
+ *       .loop(Seconds.of(6));
+ * </pre>
+ *
+ * <p>Compared with a composition of commands for each step, the whole show is one pattern that one
+ * long-lived command applies, so nothing is scheduled or interrupted as the show moves from step to
+ * step. Keyframes are kept sorted by time in primitive arrays and the current one is tracked by a
+ * cursor that moves forward as time passes, so finding the keyframes to show costs at most an
+ * occasional step of the cursor; only restarting or looping the show needs a binary search.
+ *
+ * <p>The show starts when it's first applied after being created or {@link #restart() restarted}.
+ * Before the first keyframe the LEDs are off, and unless the show loops, the last keyframe stays on
+ * forever. Keyframes should all be added before the show is played.
+ */
+public class LEDTimeline implements LEDPattern {
+  /** How the show moves into a keyframe from the keyframe before it. */
+  public enum Easing {
+    /** Cut over to the keyframe when its time comes. */
+    kStep,
+
+    /** Crossfade into the keyframe at a steady rate, starting at the keyframe before it. */
+    kLinear,
+
+    /** Crossfade into the keyframe, starting and finishing slowly. */
+    kEaseInOut
+  }
+
+  private static final long kNotStarted = Long.MIN_VALUE;
+
+  // keyframes, sorted by time; parallel arrays with m_count entries in use
+  private long[] m_timesMicros = new long[8];
+  private LEDPattern[] m_patterns = new LEDPattern[8];
+  private Easing[] m_easings = new Easing[8];
+  private int m_count;
+
+  private long m_loopMicros; // 0 for no looping
+  private long m_startMicros = kNotStarted;
+  private int m_cursor = -1; // the last keyframe reached, or -1 before the first one
+
+  private final LEDBulkOps.Scratch m_from = new LEDBulkOps.Scratch();
+  private final LEDBulkOps.Scratch m_to = new LEDBulkOps.Scratch();
+
+  /** Creates an empty timeline. Add keyframes to it with the {@code at} methods. */
+  public LEDTimeline() {}
+
+  /**
+   * Adds a keyframe that cuts over to a pattern.
+   *
+   * @param time how long after the show starts to cut over
+   * @param pattern the pattern to show
+   * @return this timeline, for chaining
+   */
+  public LEDTimeline at(Measure<Time> time, LEDPattern pattern) {
+    return at(time, pattern, Easing.kStep);
+  }
+
+  /**
+   * Adds a keyframe. A keyframe at the same time as an existing one replaces it.
+   *
+   * @param time how long after the show starts the keyframe is reached
+   * @param pattern the pattern to show
+   * @param easing how to move into this keyframe from the keyframe before it
+   * @return this timeline, for chaining
+   */
+  public LEDTimeline at(Measure<Time> time, LEDPattern pattern, Easing easing) {
+    long timeMicros = (long) time.in(Microseconds);
+    int index = Arrays.binarySearch(m_timesMicros, 0, m_count, timeMicros);
+    if (index < 0) {
+      index = -index - 1;
+      if (m_count == m_timesMicros.length) {
+        m_timesMicros = Arrays.copyOf(m_timesMicros, m_count * 2);
+        m_patterns = Arrays.copyOf(m_patterns, m_count * 2);
+        m_easings = Arrays.copyOf(m_easings, m_count * 2);
+      }
+      System.arraycopy(m_timesMicros, index, m_timesMicros, index + 1, m_count - index);
+      System.arraycopy(m_patterns, index, m_patterns, index + 1, m_count - index);
+      System.arraycopy(m_easings, index, m_easings, index + 1, m_count - index);
+      m_count++;
+    }
+
+    m_timesMicros[index] = timeMicros;
+    m_patterns[index] = pattern;
+    m_easings[index] = easing;
+    m_cursor = -1;
+    return this;
+  }
+
+  /**
+   * Adds a keyframe that cuts over to a fixed frame of colors.
+   *
+   * @param time how long after the show starts to cut over
+   * @param frame the color of each LED, packed as by {@link Color#packRGB(int, int, int)}; LEDs
+   *     past the end of the frame are turned off
+   * @return this timeline, for chaining
+   */
+  public LEDTimeline at(Measure<Time> time, int[] frame) {
+    return at(time, frame, Easing.kStep);
+  }
+
+  /**
+   * Adds a keyframe of a fixed frame of colors. A keyframe at the same time as an existing one
+   * replaces it.
+   *
+   * @param time how long after the show starts the keyframe is reached
+   * @param frame the color of each LED, packed as by {@link Color#packRGB(int, int, int)}; LEDs
+   *     past the end of the frame are turned off
+   * @param easing how to move into this keyframe from the keyframe before it
+   * @return this timeline, for chaining
+   */
+  public LEDTimeline at(Measure<Time> time, int[] frame, Easing easing) {
+    return at(time, new Frame(frame.clone()), easing);
+  }
+
+  /**
+   * Makes the show start over from the beginning every period. Keyframes at or after the end of
+   * the period are never reached.
+   *
+   * @param period how long the show runs before starting over
+   * @return this timeline, for chaining
+   */
+  public LEDTimeline loop(Measure<Time> period) {
+    m_loopMicros = (long) period.in(Microseconds);
+    return this;
+  }
+
+  /** Starts the show over from the beginning the next time it's applied. */
+  public void restart() {
+    m_startMicros = kNotStarted;
+    m_cursor = -1;
+  }
+
+  @Override
+  public void applyTo(LEDReader reader, LEDWriter writer) {
+    long elapsed = elapsed(WPIUtilJNI.now());
+    int current = seek(elapsed);
+    int next = current + 1;
+
+    if (current < 0 && (m_count == 0 || m_easings[0] == Easing.kStep)) {
+      kOff.applyTo(reader, writer);
+      return;
+    }
+    if (next >= m_count || m_easings[next] == Easing.kStep) {
+      m_patterns[current].applyTo(reader, writer);
+      return;
+    }
+
+    // crossfading from the current keyframe (or from off, before the first one) to the next
+    long segmentStart = current < 0 ? 0 : m_timesMicros[current];
+    double t = (elapsed - segmentStart) / (double) (m_timesMicros[next] - segmentStart);
+    if (m_easings[next] == Easing.kEaseInOut) {
+      t = t * t * (3 - 2 * t);
+    }
+
+    int length = reader.getLength();
+    var from = m_from.get(reader);
+    var to = m_to.get(reader);
+    (current < 0 ? kOff : m_patterns[current]).applyTo(from);
+    m_patterns[next].applyTo(to);
+    LEDBulkOps.lerp(from, 0, to, 0, length, Color.toFixedPoint(t));
+
+    var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+    if (buffer != null) {
+      int start = LEDBulkOps.contiguousStart(reader);
+      System.arraycopy(from.m_buffer, 0, buffer.m_buffer, start * 4, length * 4);
+      buffer.markDirty(start, length);
+      return;
+    }
+
+    for (int led = 0; led < length; led++) {
+      writer.setRGB(led, from.getRed(led), from.getGreen(led), from.getBlue(led));
+    }
+  }
+
+  @Override
+  public long nextChangeTimeMicros(long nowMicros) {
+    long elapsed = elapsed(nowMicros);
+    int current = seek(elapsed);
+    int next = current + 1;
+
+    if (next < m_count && m_easings[next] != Easing.kStep) {
+      return nowMicros; // crossfading
+    }
+
+    long change = current < 0 ? kNeverChanges : m_patterns[current].nextChangeTimeMicros(nowMicros);
+    long segmentEnd;
+    if (next < m_count && (m_loopMicros == 0 || m_timesMicros[next] < m_loopMicros)) {
+      segmentEnd = m_timesMicros[next];
+    } else if (m_loopMicros != 0) {
+      segmentEnd = m_loopMicros;
+    } else {
+      return change; // the last keyframe stays on
+    }
+    return Math.min(change, nowMicros + (segmentEnd - elapsed));
+  }
+
+  /**
+   * Gets how far into the show a time is, starting the show if it hasn't started yet.
+   *
+   * @param nowMicros the current time
+   * @return the time since the show started, or since it last looped
+   */
+  private long elapsed(long nowMicros) {
+    if (m_startMicros == kNotStarted) {
+      m_startMicros = nowMicros;
+    }
+    long elapsed = nowMicros - m_startMicros;
+    return m_loopMicros > 0 ? elapsed % m_loopMicros : elapsed;
+  }
+
+  /**
+   * Moves the cursor to the last keyframe reached at a point in the show.
+   *
+   * @param elapsed the time since the show started, or since it last looped
+   * @return the index of the keyframe, or -1 if the first keyframe hasn't been reached
+   */
+  private int seek(long elapsed) {
+    int cursor = m_cursor;
+    if (cursor >= 0 && elapsed < m_timesMicros[cursor]) {
+      // went backwards, by looping or restarting; search from scratch
+      int index = Arrays.binarySearch(m_timesMicros, 0, m_count, elapsed);
+      cursor = index >= 0 ? index : -index - 2;
+    } else {
+      // the usual case: still in the same segment, or a keyframe or two later
+      while (cursor + 1 < m_count && m_timesMicros[cursor + 1] <= elapsed) {
+        cursor++;
+      }
+    }
+    m_cursor = cursor;
+    return cursor;
+  }
+
+  /** A fixed frame of packed colors. */
+  private static final class Frame implements LEDPattern {
+    private final int[] m_colors;
+
+    private Frame(int[] colors) {
+      m_colors = colors;
+    }
+
+    @Override
+    public void applyTo(LEDReader reader, LEDWriter writer) {
+      int length = reader.getLength();
+      int lit = Math.min(length, m_colors.length);
+
+      var buffer = LEDBulkOps.contiguousBuffer(reader, writer);
+      if (buffer != null) {
+        int start = LEDBulkOps.contiguousStart(reader);
+        for (int led = 0; led < lit; led++) {
+          buffer.setPacked(start + led, m_colors[led]);
+        }
+        for (int led = lit; led < length; led++) {
+          buffer.setPacked(start + led, 0);
+        }
+        return;
+      }
+
+      for (int led = 0; led < length; led++) {
+        int rgb = led < lit ? m_colors[led] : 0;
+        writer.setRGB(
+            led,
+            Color.unpackRGB(rgb, Color.RGBChannel.kRed),
+            Color.unpackRGB(rgb, Color.RGBChannel.kGreen),
+            Color.unpackRGB(rgb, Color.RGBChannel.kBlue));
+      }
+    }
+
+    @Override
+    public long nextChangeTimeMicros(long nowMicros) {
+      return kNeverChanges;
+    }
+  }
+}
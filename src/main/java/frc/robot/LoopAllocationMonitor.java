@@ -0,0 +1,246 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures how much the robot loop allocates, and in which parts of the loop, to find what makes
+ * the garbage that garbage collection pauses the loop to clean up.
+ *
+ * <p>The loop is split into phases, each ended by calling {@link Phase#end()}: everything the loop
+ * thread allocated since the previous phase ended (or the loop started) is counted to that phase.
+ * A phase can be ended more than once a loop, such as a subsystem's work before and after the
+ * commands run, and its counts add up.
+ *
+ * <pre>
+ *   var monitor = new LoopAllocationMonitor(table);
+ *   var scheduler = monitor.addPhase("Scheduler");
+ *
+ *   public void robotPeriodic() {
+ *     monitor.startLoop();
+ *     CommandScheduler.getInstance().run();
+ *     scheduler.end();
+ *     monitor.endLoop();
+ *   }
+ * </pre>
+ *
+ * <p>Each loop publishes to the table: "bytes" allocated by the loop, then "gcCount" and "gcMillis"
+ * of the garbage collections that finished during the loop, so pauses can be lined up with the
+ * allocations before them; and for each phase, "bytes" in the loop and "totalBytes" since the robot
+ * started, to rank the phases by how much they allocate.
+ *
+ * <p>Only the loop thread's allocations are counted, from {@link
+ * com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}. If the JVM can't count
+ * them, the monitor reports that once and measures nothing.
+ *
+ * <p>The monitor listens to the JVM's garbage collectors until it is closed, so close it when done
+ * with it, as a robot created more than once in the same JVM for simulation is.
+ */
+public class LoopAllocationMonitor implements AutoCloseable {
+  private final com.sun.management.ThreadMXBean m_threads;
+  private final NetworkTable m_table;
+  private final IntegerPublisher m_bytesPublisher;
+  private final IntegerPublisher m_gcCountPublisher;
+  private final IntegerPublisher m_gcMillisPublisher;
+  private final List<Phase> m_phases = new ArrayList<>();
+
+  // written by the thread that delivers garbage collection notifications
+  private final AtomicLong m_gcCount = new AtomicLong();
+  private final AtomicLong m_gcMillis = new AtomicLong();
+  private final NotificationListener m_gcListener = this::onGarbageCollection;
+  private final List<NotificationEmitter> m_gcEmitters = new ArrayList<>();
+
+  private long m_loopStartBytes;
+  private long m_lastMarkBytes;
+  private long m_lastGcCount;
+  private long m_lastGcMillis;
+
+  /** A part of the loop whose allocations are counted separately. */
+  public final class Phase {
+    private final IntegerPublisher m_bytesPublisher;
+    private final IntegerPublisher m_totalBytesPublisher;
+    private final String m_name;
+    private long m_bytes;
+    private long m_totalBytes;
+
+    private Phase(String name) {
+      m_name = name;
+      NetworkTable table = m_table.getSubTable(name);
+      m_bytesPublisher = table.getIntegerTopic("bytes").publish();
+      m_totalBytesPublisher = table.getIntegerTopic("totalBytes").publish();
+    }
+
+    /** Counts what was allocated since the previous phase ended to this phase. */
+    public void end() {
+      if (m_threads == null) {
+        return;
+      }
+      long now = m_threads.getCurrentThreadAllocatedBytes();
+      m_bytes += now - m_lastMarkBytes;
+      m_lastMarkBytes = now;
+    }
+
+    /**
+     * Gets the name of the phase.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return m_name;
+    }
+
+    /**
+     * Gets how much the phase allocated in the last loop.
+     *
+     * @return the bytes allocated
+     */
+    public long getBytes() {
+      return m_bytes;
+    }
+
+    /**
+     * Gets how much the phase allocated since the monitor was created.
+     *
+     * @return the bytes allocated
+     */
+    public long getTotalBytes() {
+      return m_totalBytes;
+    }
+  }
+
+  /**
+   * Creates a monitor with no phases, and starts listening for garbage collections.
+   *
+   * @param table the table to publish the measurements in
+   */
+  public LoopAllocationMonitor(NetworkTable table) {
+    m_table = table;
+    m_bytesPublisher = table.getIntegerTopic("bytes").publish();
+    m_gcCountPublisher = table.getIntegerTopic("gcCount").publish();
+    m_gcMillisPublisher = table.getIntegerTopic("gcMillis").publish();
+
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (threads.isThreadAllocatedMemorySupported()) {
+      threads.setThreadAllocatedMemoryEnabled(true);
+      m_threads = threads;
+    } else {
+      DriverStation.reportError("Loop allocations can't be measured on this JVM", false);
+      m_threads = null;
+    }
+
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (gc instanceof NotificationEmitter emitter) {
+        emitter.addNotificationListener(m_gcListener, null, null);
+        m_gcEmitters.add(emitter);
+      }
+    }
+  }
+
+  /**
+   * Counts a garbage collection that finished; called on the thread that delivers the JVM's
+   * notifications.
+   *
+   * @param notification the notification
+   * @param handback unused
+   */
+  private void onGarbageCollection(Notification notification, Object handback) {
+    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+        notification.getType())) {
+      var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+      m_gcCount.incrementAndGet();
+      m_gcMillis.addAndGet(info.getGcInfo().getDuration());
+    }
+  }
+
+  /** Stops listening for garbage collections and stops publishing. */
+  @Override
+  public void close() {
+    for (NotificationEmitter emitter : m_gcEmitters) {
+      try {
+        emitter.removeNotificationListener(m_gcListener);
+      } catch (ListenerNotFoundException e) {
+        // already removed
+      }
+    }
+    m_gcEmitters.clear();
+
+    m_bytesPublisher.close();
+    m_gcCountPublisher.close();
+    m_gcMillisPublisher.close();
+    for (Phase phase : m_phases) {
+      phase.m_bytesPublisher.close();
+      phase.m_totalBytesPublisher.close();
+    }
+  }
+
+  /**
+   * Gets the phase with a name, adding it if there isn't one. Phases can be added at any time, but
+   * adding one allocates, so add them before the loop starts.
+   *
+   * @param name the name of the phase, which is also its subtable
+   * @return the phase
+   */
+  public Phase addPhase(String name) {
+    for (Phase phase : m_phases) {
+      if (phase.m_name.equals(name)) {
+        return phase;
+      }
+    }
+    var phase = new Phase(name);
+    m_phases.add(phase);
+    return phase;
+  }
+
+  /** Starts measuring a loop. */
+  public void startLoop() {
+    if (m_threads == null) {
+      return;
+    }
+    for (int i = 0; i < m_phases.size(); i++) {
+      m_phases.get(i).m_bytes = 0;
+    }
+    m_loopStartBytes = m_threads.getCurrentThreadAllocatedBytes();
+    m_lastMarkBytes = m_loopStartBytes;
+  }
+
+  /**
+   * Finishes measuring a loop and publishes the measurements. What was allocated since the last
+   * phase ended is counted to the loop but no phase.
+   */
+  public void endLoop() {
+    if (m_threads == null) {
+      return;
+    }
+    m_bytesPublisher.set(m_threads.getCurrentThreadAllocatedBytes() - m_loopStartBytes);
+
+    long gcCount = m_gcCount.get();
+    long gcMillis = m_gcMillis.get();
+    m_gcCountPublisher.set(gcCount - m_lastGcCount);
+    m_gcMillisPublisher.set(gcMillis - m_lastGcMillis);
+    m_lastGcCount = gcCount;
+    m_lastGcMillis = gcMillis;
+
+    for (int i = 0; i < m_phases.size(); i++) {
+      Phase phase = m_phases.get(i);
+      phase.m_totalBytes += phase.m_bytes;
+      phase.m_bytesPublisher.set(phase.m_bytes);
+      phase.m_totalBytesPublisher.set(phase.m_totalBytes);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Microseconds;
+
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.networktables.Topic;
+import edu.wpi.first.units.Measure;
+import edu.wpi.first.units.Time;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.util.datalog.DataLog;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Records chosen NetworkTables topics to a DataLog, instead of everything as {@link
+ * edu.wpi.first.wpilibj.DataLogManager#logNetworkTables(boolean)} does. Only topics under an
+ * allowed prefix are recorded, and each prefix can limit how often and when its topics are:
+ *
+ * <ul>
+ *   <li>a minimum interval records at most one value per topic per interval; a value that comes
+ *       too soon is held, replaced by any later one, and recorded when the interval is up, so the
+ *       log always ends up with a topic's latest value
+ *   <li>change-only skips a value that is the same as the last one recorded for the topic
+ * </ul>
+ *
+ * <pre>
+ *   DataLogManager.logNetworkTables(false);
+ *   var logger =
+ *       new NetworkTablesLogger(NetworkTableInstance.getDefault(), DataLogManager.getLog())
+ *           .allow("/Team4237/Commands/")
+ *           .allow("/Team4237/Arm/", Seconds.of(0.1), true);
+ * </pre>
+ *
+ * <p>Call {@link #poll()} periodically to record the values that arrived since the last call. A
+ * topic follows the longest allowed prefix it's under, and is recorded as "NT:" and its name, as
+ * the DataLogManager would.
+ */
+public class NetworkTablesLogger implements AutoCloseable {
+  private final NetworkTableListenerPoller m_poller;
+  private final DataLog m_log;
+  private final List<Rule> m_rules = new ArrayList<>();
+  private final TopicTable m_topics = new TopicTable();
+  private final List<TopicLog> m_held = new ArrayList<>();
+  private long m_recordedCount;
+  private long m_skippedCount;
+
+  /** How the topics under a prefix are recorded. */
+  private record Rule(String prefix, long minIntervalMicros, boolean changeOnly, int listener) {}
+
+  /** What has been recorded of a topic. */
+  private static final class TopicLog {
+    private final Rule m_rule;
+    private final int m_entry;
+    private NetworkTableValue m_lastRecorded;
+    private long m_lastRecordedMicros; // when it was recorded, which is later if it was held
+    private NetworkTableValue m_held; // waiting for the minimum interval to pass
+
+    private TopicLog(Rule rule, int entry) {
+      m_rule = rule;
+      m_entry = entry;
+    }
+  }
+
+  /**
+   * The topics seen so far, by topic handle. It's open addressed with linear probing, so looking up
+   * a topic neither boxes its handle nor allocates; it only grows when a new topic is seen.
+   */
+  private static final class TopicTable {
+    private int[] m_handles = new int[32]; // 0 marks an empty slot; no NetworkTables handle is 0
+    private TopicLog[] m_topics = new TopicLog[32];
+    private int m_size;
+
+    /** Gets a topic by handle, or null if it hasn't been seen. */
+    private TopicLog get(int handle) {
+      int mask = m_handles.length - 1;
+      for (int i = slot(handle, mask); m_handles[i] != 0; i = (i + 1) & mask) {
+        if (m_handles[i] == handle) {
+          return m_topics[i];
+        }
+      }
+      return null;
+    }
+
+    /** Adds a topic that isn't in the table yet, growing it to stay at most half full. */
+    private void add(int handle, TopicLog topic) {
+      if (2 * (m_size + 1) > m_handles.length) {
+        int[] handles = m_handles;
+        TopicLog[] topics = m_topics;
+        m_handles = new int[2 * handles.length];
+        m_topics = new TopicLog[2 * handles.length];
+        for (int i = 0; i < handles.length; i++) {
+          if (handles[i] != 0) {
+            insert(handles[i], topics[i]);
+          }
+        }
+      }
+      insert(handle, topic);
+      m_size++;
+    }
+
+    private void insert(int handle, TopicLog topic) {
+      int mask = m_handles.length - 1;
+      int i = slot(handle, mask);
+      while (m_handles[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      m_handles[i] = handle;
+      m_topics[i] = topic;
+    }
+
+    /** Where to start looking for a handle; its index is in the low bits, its type in the high. */
+    private static int slot(int handle, int mask) {
+      return (handle ^ (handle >>> 16)) & mask;
+    }
+  }
+
+  /**
+   * Creates a logger that records nothing until prefixes are allowed.
+   *
+   * @param instance the NetworkTables instance to record from
+   * @param log the DataLog to record to
+   */
+  public NetworkTablesLogger(NetworkTableInstance instance, DataLog log) {
+    this(new NetworkTableListenerPoller(instance), log);
+  }
+
+  /**
+   * Creates a logger that listens with a given poller, so tests can read its events themselves.
+   *
+   * @param poller the poller to add the prefixes' listeners to
+   * @param log the DataLog to record to
+   */
+  NetworkTablesLogger(NetworkTableListenerPoller poller, DataLog log) {
+    m_poller = poller;
+    m_log = log;
+  }
+
+  /**
+   * Records every value of the topics under a prefix.
+   *
+   * @param prefix the start of the topic names, such as "/Team4237/Commands/"
+   * @return this logger, to allow more prefixes
+   */
+  public NetworkTablesLogger allow(String prefix) {
+    return allow(prefix, Microseconds.of(0), false);
+  }
+
+  /**
+   * Records the topics under a prefix, limiting how often and when.
+   *
+   * @param prefix the start of the topic names, such as "/Team4237/Arm/"
+   * @param minInterval the shortest time between recorded values of a topic
+   * @param changeOnly whether to skip values the same as the last one recorded
+   * @return this logger, to allow more prefixes
+   */
+  public NetworkTablesLogger allow(String prefix, Measure<Time> minInterval, boolean changeOnly) {
+    // the current values come first, so the log starts with the state at the time
+    int listener =
+        m_poller.addListener(
+            new String[] {prefix},
+            EnumSet.of(NetworkTableEvent.Kind.kImmediate, NetworkTableEvent.Kind.kValueAll));
+    m_rules.add(new Rule(prefix, (long) minInterval.in(Microseconds), changeOnly, listener));
+    return this;
+  }
+
+  /** Records the values that arrived since the last call, and any held values now due. */
+  public void poll() {
+    poll(m_poller.readQueue());
+  }
+
+  /**
+   * Records the values of events read from the listener queue, and any held values now due.
+   *
+   * @param events the events, as {@link NetworkTableListenerPoller#readQueue()} returns them
+   */
+  void poll(NetworkTableEvent[] events) {
+    for (NetworkTableEvent event : events) {
+      if (event.valueData != null) {
+        int handle = event.valueData.topic;
+        TopicLog topic = m_topics.get(handle);
+        if (topic == null) {
+          topic = start(event);
+          m_topics.add(handle, topic);
+        }
+        // a topic under more than one allowed prefix is reported to each of their listeners
+        if (topic.m_rule.listener() == event.listener) {
+          offer(topic, event.valueData.value);
+        }
+      }
+    }
+
+    long now = WPIUtilJNI.now();
+    for (int i = m_held.size() - 1; i >= 0; i--) {
+      TopicLog topic = m_held.get(i);
+      if (now - topic.m_lastRecordedMicros >= topic.m_rule.minIntervalMicros()) {
+        record(topic, topic.m_held, now);
+        topic.m_held = null;
+        m_held.remove(i);
+      }
+    }
+  }
+
+  /**
+   * Gets how many values have been recorded.
+   *
+   * @return the number of values recorded
+   */
+  public long getRecordedCount() {
+    return m_recordedCount;
+  }
+
+  /**
+   * Gets how many values were left out of the log because they were the same as the last one
+   * recorded or were replaced by a later one while held.
+   *
+   * @return the number of values skipped
+   */
+  public long getSkippedCount() {
+    return m_skippedCount;
+  }
+
+  @Override
+  public void close() {
+    m_poller.close();
+  }
+
+  /** Starts recording a topic seen for the first time, by the rule of its longest prefix. */
+  private TopicLog start(NetworkTableEvent event) {
+    Topic topic = event.valueData.getTopic();
+    String name = topic.getName();
+    Rule rule = null;
+    for (Rule candidate : m_rules) {
+      if (name.startsWith(candidate.prefix())
+          && (rule == null || candidate.prefix().length() > rule.prefix().length())) {
+        rule = candidate;
+      }
+    }
+    long timestamp = event.valueData.value.getTime();
+    return new TopicLog(rule, m_log.start("NT:" + name, topic.getTypeString(), "", timestamp));
+  }
+
+  /** Records a new value of a topic, holds it until the interval is up, or skips it. */
+  private void offer(TopicLog topic, NetworkTableValue value) {
+    if (topic.m_held != null) {
+      m_skippedCount++; // replaced by this one, or made moot if this one is unchanged
+      topic.m_held = null;
+      m_held.remove(topic);
+    }
+
+    NetworkTableValue last = topic.m_lastRecorded;
+    if (topic.m_rule.changeOnly()
+        && last != null
+        && last.getType() == value.getType()
+        && Objects.deepEquals(last.getValue(), value.getValue())) {
+      m_skippedCount++;
+    } else if (last != null
+        && value.getTime() - topic.m_lastRecordedMicros < topic.m_rule.minIntervalMicros()) {
+      topic.m_held = value;
+      m_held.add(topic);
+    } else {
+      record(topic, value, value.getTime());
+    }
+  }
+
+  /** Appends a value to the topic's entry in the log, with the time it was set. */
+  private void record(TopicLog topic, NetworkTableValue value, long nowMicros) {
+    int entry = topic.m_entry;
+    long timestamp = value.getTime();
+    switch (value.getType()) {
+      case kBoolean -> m_log.appendBoolean(entry, value.getBoolean(), timestamp);
+      case kInteger -> m_log.appendInteger(entry, value.getInteger(), timestamp);
+      case kFloat -> m_log.appendFloat(entry, value.getFloat(), timestamp);
+      case kDouble -> m_log.appendDouble(entry, value.getDouble(), timestamp);
+      case kString -> m_log.appendString(entry, value.getString(), timestamp);
+      case kRaw -> m_log.appendRaw(entry, value.getRaw(), timestamp);
+      case kBooleanArray -> m_log.appendBooleanArray(entry, value.getBooleanArray(), timestamp);
+      case kIntegerArray -> m_log.appendIntegerArray(entry, value.getIntegerArray(), timestamp);
+      case kFloatArray -> m_log.appendFloatArray(entry, value.getFloatArray(), timestamp);
+      case kDoubleArray -> m_log.appendDoubleArray(entry, value.getDoubleArray(), timestamp);
+      case kStringArray -> m_log.appendStringArray(entry, value.getStringArray(), timestamp);
+      default -> {
+        return; // unassigned; nothing to record
+      }
+    }
+    topic.m_lastRecorded = value;
+    topic.m_lastRecordedMicros = nowMicros;
+    m_recordedCount++;
+  }
+}
@@ -182,6 +182,7 @@
  */
 package frc.robot;
 
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
@@ -190,21 +191,51 @@ public class Robot extends TimedRobot {
   private RobotContainer m_robotContainer;
   private Command m_autonomousSignal;
   private Command m_disjointedSequenceTests;
+  private final LoopAllocationMonitor m_loopMonitor; // garbage made in each part of the loop
+  private final LoopAllocationMonitor.Phase m_schedulerPhase;
 
   public Robot() {
-    m_robotContainer = new RobotContainer();
+    this(null);
+  }
+
+  /**
+   * Creates the robot with its LEDs on any output, such as a frame capture when simulating
+   *
+   * @param ledOutput where to send the LED frames; null for the usual output
+   */
+  Robot(LEDOutput ledOutput) {
+    m_loopMonitor =
+        new LoopAllocationMonitor(NetworkTableInstance.getDefault().getTable("Team4237/Loop"));
+    m_schedulerPhase = m_loopMonitor.addPhase("Scheduler");
+    m_robotContainer = new RobotContainer(m_loopMonitor, ledOutput);
+  }
+
+  /**
+   * Stops the command logging and the measuring of the loop's allocations, so a robot created again
+   * in this JVM starts clean.
+   */
+  @Override
+  public void close() {
+    m_robotContainer.close();
+    m_loopMonitor.close();
+    super.close();
   }
 
   @Override
   public void robotPeriodic() {
+    m_loopMonitor.startLoop();
+
     // get a consistent set of all inputs including non-subsystems not in scheduler run
     m_robotContainer.runBeforeCommands(); // this is essentially similar to running the scheduler
 
     // check all triggers and run all scheduled commands; all Subsystem.periodic() are run first
     CommandScheduler.getInstance().run();
+    m_schedulerPhase.end();
 
     // write outputs like logging, dashboards, indicators, meh - goal-oriented subsystem periodic
     m_robotContainer.runAfterCommands();
+
+    m_loopMonitor.endLoop();
   }
 
   @Override
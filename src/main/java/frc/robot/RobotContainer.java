@@ -23,11 +23,14 @@ import frc.robot.subsystems.RobotSignals.LEDPatternSupplier;
 
 import edu.wpi.first.math.filter.Debouncer.DebounceType;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
 import java.util.Optional;
 
 public class RobotContainer {
@@ -42,6 +45,11 @@ public class RobotContainer {
   private boolean useConsole            = false;
   private boolean useDataLog            = true;
   private boolean useShuffleBoardLog    = false;
+  // which command executes to log - firstOnly(), everyNth(50), decimated(2.0) Hz, reservoir(5)
+  private CommandExecuteSampler executeSampler = CommandExecuteSampler.firstOnly();
+
+  // option to stream the LEDs to a file for an external viewer when simulating (LEDFrameFileReader)
+  private boolean useLEDFrameFile       = false;
 
   // options to select desired demonstrations
   private boolean useAchieveHueGoal           = true;
@@ -67,10 +75,45 @@ public class RobotContainer {
   private Optional<MooreLikeFSMMultiCommand> m_mooreLikeFSMbottom = Optional.empty();
   private Optional<GroupDisjointTest>        m_groupDisjointTest  = Optional.empty(); // container and creator of all
                                                                                       // the group/disjoint tests
+
+  // garbage made by each part of the loop, to rank them (the commands they run are in "Scheduler")
+  private final LoopAllocationMonitor m_loopMonitor;
+  private final LoopAllocationMonitor.Phase m_intakePhase;
+  private final LoopAllocationMonitor.Phase m_historyFSMPhase;
+  private final LoopAllocationMonitor.Phase m_achieveHueGoalPhase;
+  private final LoopAllocationMonitor.Phase m_mooreLikeFSMPhase;
+  private final LoopAllocationMonitor.Phase m_mooreLikeFSMMultiCommandPhase;
+  private final LoopAllocationMonitor.Phase m_groupDisjointTestPhase;
+  private final LoopAllocationMonitor.Phase m_robotSignalsPhase;
+  private final LoopAllocationMonitor.Phase m_commandSchedulerLogPhase;
+
   /**
    * Constructor creates most of the subsystems and operator controller bindings
+   * 
+   * @param loopMonitor measures the garbage made in each part of the loop
    */
-  public RobotContainer() {
+  public RobotContainer(LoopAllocationMonitor loopMonitor) {
+    this(loopMonitor, null);
+  }
+
+  /**
+   * Constructor creates most of the subsystems and operator controller bindings
+   * 
+   * @param loopMonitor measures the garbage made in each part of the loop
+   * @param ledOutput where to send the LED frames, such as a frame capture; null for the usual
+   *     output
+   */
+  public RobotContainer(LoopAllocationMonitor loopMonitor, LEDOutput ledOutput) {
+
+    m_loopMonitor = loopMonitor;
+    m_intakePhase                   = loopMonitor.addPhase("Intake");
+    m_historyFSMPhase               = loopMonitor.addPhase("HistoryFSM");
+    m_achieveHueGoalPhase           = loopMonitor.addPhase("AchieveHueGoal");
+    m_mooreLikeFSMPhase             = loopMonitor.addPhase("MooreLikeFSM");
+    m_mooreLikeFSMMultiCommandPhase = loopMonitor.addPhase("MooreLikeFSMMultiCommand");
+    m_groupDisjointTestPhase        = loopMonitor.addPhase("GroupDisjointTest");
+    m_robotSignalsPhase             = loopMonitor.addPhase("RobotSignals");
+    m_commandSchedulerLogPhase      = loopMonitor.addPhase("CommandSchedulerLog");
  
     /* There are 10's of thousands of ways to do logging.
      * Here are 3 ways with options within the method.
@@ -80,7 +123,7 @@ public class RobotContainer {
     final int operatorControllerPort = 0;
     m_operatorController = new CommandXboxController(operatorControllerPort);
     // subsystems
-    m_robotSignals = new RobotSignals();
+    m_robotSignals = createRobotSignals(ledOutput);
 
     // optional subsystems
     if(useIntake)                   m_intake             = Optional.of(new Intake(m_robotSignals.m_main));
@@ -95,6 +138,32 @@ public class RobotContainer {
     configureDefaultCommands();
   }
 
+  /**
+   * Create the LED signals on the given output, or else on the LED driver or, if selected when
+   * simulating, on a frame file
+   * 
+   * @param ledOutput where to send the LED frames; null for the LED driver or frame file
+   * @return the LED signals
+   */
+  private RobotSignals createRobotSignals(LEDOutput ledOutput) {
+    if(ledOutput != null)
+    {
+      return new RobotSignals(ledOutput);
+    }
+    if(useLEDFrameFile && RobotBase.isSimulation())
+    {
+      final int frameFileSlots = 64;
+      final int frameFileMaxLength = 5460; // the most LEDs the roboRIO can drive
+      try {
+        return new RobotSignals(
+            new LEDFrameFileOutput(Path.of("leds.bin"), frameFileSlots, frameFileMaxLength));
+      } catch (IOException e) {
+        DriverStation.reportError("LED frame file not available: " + e.getMessage(), false);
+      }
+    }
+    return new RobotSignals();
+  }
+
   /**
    * configure driver and operator controllers' buttons
    */
@@ -286,9 +355,11 @@ public class RobotContainer {
   {
       if (useConsole || useDataLog || useShuffleBoardLog) {
         schedulerLog = new CommandSchedulerLog(useConsole, useDataLog, useShuffleBoardLog);
+        schedulerLog.measureAllocations(m_loopMonitor);
         schedulerLog.logCommandInitialize();
         schedulerLog.logCommandInterrupt();
         schedulerLog.logCommandFinish();
+        schedulerLog.setExecuteSampler(executeSampler);
         schedulerLog.logCommandExecute();  // Can (optionally) generate a lot of output        
       }
   }
@@ -322,13 +393,13 @@ public class RobotContainer {
    *
    */
   public void runBeforeCommands() {
-    m_intake            .ifPresent((x)->x.runBeforeCommands());
-    m_historyFSM        .ifPresent((x)->x.runBeforeCommands());
-    m_achieveHueGoal    .ifPresent((x)->x.runBeforeCommands());
-    m_mooreLikeFSMtop   .ifPresent((x)->x.runBeforeCommands());
-    m_mooreLikeFSMbottom.ifPresent((x)->x.runBeforeCommands());
-    m_groupDisjointTest .ifPresent((x)->x.runBeforeCommands());
-    m_robotSignals                       .runBeforeCommands();
+    m_intake            .ifPresent((x)->x.runBeforeCommands()); m_intakePhase                  .end();
+    m_historyFSM        .ifPresent((x)->x.runBeforeCommands()); m_historyFSMPhase              .end();
+    m_achieveHueGoal    .ifPresent((x)->x.runBeforeCommands()); m_achieveHueGoalPhase          .end();
+    m_mooreLikeFSMtop   .ifPresent((x)->x.runBeforeCommands()); m_mooreLikeFSMPhase            .end();
+    m_mooreLikeFSMbottom.ifPresent((x)->x.runBeforeCommands()); m_mooreLikeFSMMultiCommandPhase.end();
+    m_groupDisjointTest .ifPresent((x)->x.runBeforeCommands()); m_groupDisjointTestPhase       .end();
+    m_robotSignals                       .runBeforeCommands();  m_robotSignalsPhase            .end();
   }
 
   /**
@@ -338,12 +409,24 @@ public class RobotContainer {
    * classes that have periodic outputs
    */
   public void runAfterCommands() {
-    m_intake            .ifPresent((x)->x.runAfterCommands());
-    m_historyFSM        .ifPresent((x)->x.runAfterCommands());
-    m_achieveHueGoal    .ifPresent((x)->x.runAfterCommands());
-    m_mooreLikeFSMtop   .ifPresent((x)->x.runAfterCommands());
-    m_mooreLikeFSMbottom.ifPresent((x)->x.runAfterCommands());
-    m_groupDisjointTest .ifPresent((x)->x.runAfterCommands());
-    m_robotSignals                       .runAfterCommands();
+    m_intake            .ifPresent((x)->x.runAfterCommands()); m_intakePhase                  .end();
+    m_historyFSM        .ifPresent((x)->x.runAfterCommands()); m_historyFSMPhase              .end();
+    m_achieveHueGoal    .ifPresent((x)->x.runAfterCommands()); m_achieveHueGoalPhase          .end();
+    m_mooreLikeFSMtop   .ifPresent((x)->x.runAfterCommands()); m_mooreLikeFSMPhase            .end();
+    m_mooreLikeFSMbottom.ifPresent((x)->x.runAfterCommands()); m_mooreLikeFSMMultiCommandPhase.end();
+    m_groupDisjointTest .ifPresent((x)->x.runAfterCommands()); m_groupDisjointTestPhase       .end();
+    m_robotSignals                       .runAfterCommands();  m_robotSignalsPhase            .end();
+    if (schedulerLog != null)             schedulerLog.runAfterCommands();
+    m_commandSchedulerLogPhase.end();
+  }
+
+  /**
+   * Stop the command logging, whose callbacks the command scheduler keeps for good, so a robot
+   * created again in the same JVM, as in simulation tests, doesn't log every command twice
+   */
+  public void close() {
+    if (schedulerLog != null) {
+      schedulerLog.close();
+    }
   }
 }
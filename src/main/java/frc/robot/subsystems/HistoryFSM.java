@@ -18,7 +18,6 @@ package frc.robot.subsystems;
  * "runAfterCommands()" periodic methods as used for a sub-purpose here is a good way.
  */
 
-import static edu.wpi.first.units.Units.Milliseconds;
 import static edu.wpi.first.units.Units.Seconds;
 
 import frc.robot.Color;
@@ -27,11 +26,10 @@ import frc.robot.subsystems.RobotSignals.LEDView;
 
 import edu.wpi.first.units.Measure;
 import edu.wpi.first.units.Time;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 public class HistoryFSM extends SubsystemBase {
@@ -41,6 +39,10 @@ public class HistoryFSM extends SubsystemBase {
   // Periodic output variable used for each run of "afterCommands()"
   // this is used before command to set it is run so start with LEDs off
   private LEDPattern m_persistentPatternDemo = LEDPattern.solid(Color.kBlack);
+  // a pattern for every hue, made once so choosing a new color doesn't make garbage
+  private final LEDPattern[] m_huePatterns = new LEDPattern[m_computerColorWheel];
+  // one long-lived signal that displays whichever color is current
+  private final Command m_colorSignal;
 
   // Add a color [hue number as subscript] and last time used to the history
   // so that color isn't used again during a lockout period.
@@ -56,15 +58,16 @@ public class HistoryFSM extends SubsystemBase {
 
   private static final int m_computerColorWheel = 180; // max count of hues numbered 0 to 179
   // list of the last times of all the colors so try not to repeat for a long time so repeats are
-  // rare
-  private List<Measure<Time>> m_lastTimeHistoryOfColors = new ArrayList<>(m_computerColorWheel);
+  // rare. Times are FPGA seconds, which follow the simulator's clock and are plain numbers so
+  // checking them every iteration doesn't make garbage.
+  private final double[] m_lastTimeHistoryOfColors = new double[m_computerColorWheel];
 
-  private static final double m_beginningOfTime = 0.0;
+  private static final double m_beginningOfTime = Double.NEGATIVE_INFINITY;
   private static final double m_endOfTime = Double.MAX_VALUE;
 
   // time the current color display should end and a new color selected
   // initialize so the time doesn't trigger anything until the "Y" button is pressed
-  private Measure<Time> m_nextTime = Milliseconds.of(m_endOfTime);
+  private double m_nextTime = m_endOfTime;
   Measure<Time> m_changeColorPeriod = Seconds.of(2.0); // display color for this long
   Measure<Time> m_colorLockoutPeriod = Seconds.of(20.0); // try not to reuse a color for this long
 
@@ -72,20 +75,26 @@ public class HistoryFSM extends SubsystemBase {
     m_robotSignals = robotSignals;
 
     fillInitialTimes(); // initialize last time used for all the hues of the color wheel
+    for (int hue = 0; hue < m_computerColorWheel; hue++) {
+      m_huePatterns[hue] = LEDPattern.solid(Color.fromHSV(hue, 200, 200));
+    }
+    // the solid colors don't change so the signal renders only when a new color is selected
+    m_colorSignal =
+        m_robotSignals.setSignal(() -> m_persistentPatternDemo).withName("History FSM LED");
   }
 
   /** Create an initialized list of hues */
   private void fillInitialTimes() {
     // initially indicate hue hasn't been used in a long time ago so available immediately
     for (int i = 0; i < m_computerColorWheel; i++) {
-      m_lastTimeHistoryOfColors.add(Seconds.of(m_beginningOfTime));
+      m_lastTimeHistoryOfColors[i] = m_beginningOfTime;
     }
   }
 
   /** Set the time for the trigger of its next periodic run */
   private void setNextTime() {
-    Measure<Time> currentTime = Milliseconds.of(System.currentTimeMillis());
-    m_nextTime = currentTime.plus(m_changeColorPeriod);
+    double currentTime = Timer.getFPGATimestamp();
+    m_nextTime = currentTime + m_changeColorPeriod.in(Seconds);
   }
 
   /**
@@ -94,12 +103,12 @@ public class HistoryFSM extends SubsystemBase {
    * @return has time elapsed
    */
   public boolean timesUp() {
-    if (m_nextTime.lt(Milliseconds.of(System.currentTimeMillis()))) {
+    if (m_nextTime < Timer.getFPGATimestamp()) {
       // reset; a command may run that will set the correct periodic "nextTime".
       // Otherwise wait for other triggering to restart.
       // This locks-out automatic restarting on disable-to-enable change; other trigger
       // required to get it started again.
-      m_nextTime = Milliseconds.of(m_endOfTime);
+      m_nextTime = m_endOfTime;
       return true;
     }
     return false; // not time to trigger yet
@@ -123,7 +132,8 @@ public class HistoryFSM extends SubsystemBase {
    * <p>Set a random color that hasn't been used in the last "m_colorLockoutPeriod"
    */
   private void getHSV() {
-    Measure<Time> currentTime = Milliseconds.of(System.currentTimeMillis());
+    double currentTime = Timer.getFPGATimestamp();
+    double lockoutPeriod = m_colorLockoutPeriod.in(Seconds);
     int randomHue; // to be the next color
     int loopCounter = 0; // count attempts to find a different hue
     int loopCounterLimit = 20; // limit attempts to find a different hue
@@ -134,21 +144,23 @@ public class HistoryFSM extends SubsystemBase {
       // Generate random numbers for hues in range of the computer color wheel
       randomHue = m_rand.nextInt(m_computerColorWheel);
       // if hue hasn't been used recently, then use it now and update its history
-      var colorTime = m_lastTimeHistoryOfColors.get(randomHue); // get the associated time
-      if (colorTime.lt(currentTime.minus(m_colorLockoutPeriod))) {
-        m_lastTimeHistoryOfColors.set(randomHue, currentTime);
+      var colorTime = m_lastTimeHistoryOfColors[randomHue]; // get the associated time
+      if (colorTime < currentTime - lockoutPeriod) {
+        m_lastTimeHistoryOfColors[randomHue] = currentTime;
         break;
       }
       // hue used recently so loop to get another hue
       // limit attempts - no infinite loops allowed
     } while (++loopCounter < loopCounterLimit);
 
-    m_persistentPatternDemo = LEDPattern.solid(Color.fromHSV(randomHue, 200, 200));
+    m_persistentPatternDemo = m_huePatterns[randomHue];
 
     // Set and refresh the color could be done many ways.
     // Here it's set once and assumed to persist by some other means than this method.
     // Access to the LEDs is only by command.
-    m_robotSignals.setSignal(m_persistentPatternDemo).withName("History FSM LED").schedule();
+    if (m_robotSignals.getCurrentCommand() != m_colorSignal) {
+      m_colorSignal.schedule(); // the first time; after that it picks up the new color itself
+    }
     // This subsystem wasn't designed to run in disabled mode. Because of the way the LED subsystem
     // works the last color selected persists in Disabled mode but new colors are not selected.
     // Could check here for that and black out if necessary. Or do something in disabledInit().
@@ -179,9 +191,9 @@ public class HistoryFSM extends SubsystemBase {
       m_verificationPrintCounter++;
       int verificationPrintLimit = 50 /*hz*/ * 12 /*seconds*/;
       if (m_verificationPrintCounter % verificationPrintLimit == 0) { // dump every 12 seconds (50hz * 12 = 600)
-        System.out.println("current time " + System.currentTimeMillis());
-        for (int i = 0; i < m_lastTimeHistoryOfColors.size(); i++) {
-          System.out.println(i + " " + m_lastTimeHistoryOfColors.get(i).toLongString());
+        System.out.println("current time " + Timer.getFPGATimestamp());
+        for (int i = 0; i < m_lastTimeHistoryOfColors.length; i++) {
+          System.out.println(i + " " + m_lastTimeHistoryOfColors[i]);
         }
       }
     }
@@ -1,5 +1,6 @@
 package frc.robot.subsystems;
 
+import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.wpilibj2.command.Commands.waitSeconds;
 
 import frc.robot.subsystems.RobotSignals.LEDView;
@@ -11,6 +12,7 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.FunctionalCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import java.util.function.IntSupplier;
 
 /**
  * Demonstration of a Moore-Like FSM example that is similar to composing sequential and parallel
@@ -51,7 +53,13 @@ public class MooreLikeFSM extends SubsystemBase {
   private final LEDView m_robotSignals; // LED view where the output is displayed
   private double m_periodFactor; // changeable speed of the scanner
   private final Color m_color; // changeable color of the scanner
+  private final Command m_scannerSignal; // displays the scanner with its comet tail
+  private int m_light; // which LED the scanner's comet head is on
   private final double m_numberPeriods = 14.0; // number of periods or time bins to generate time-based triggers
+  // dashboard keys are made once; concatenating them every iteration would make garbage
+  private final String m_entryKey = "FSM entry action " + this;
+  private final String m_steadyStateKey = "FSM steady-state action " + this;
+  private final String m_exitKey = "FSM exit action " + this;
 
   /**
    * Eight state FSM for the eight lights in the Knight Rider Kitt Scanner
@@ -73,6 +81,9 @@ public class MooreLikeFSM extends SubsystemBase {
     m_robotSignals = robotSignals;
     m_periodFactor = periodFactor;
     m_color = color;
+    // one long-lived signal whose lit LED follows the state; persistence draws the comet tail
+    m_scannerSignal = m_robotSignals.setSignal(
+        oneLED(() -> m_light, m_color).withPersistence(Seconds.of(1.0 / m_periodFactor)));
     createTransitions();
     startFSM(); // This FSM runs also disabled so start it immediately.
                 // If the FSM doesn't run disabled, then start it in auto or periodic init.
@@ -210,21 +221,23 @@ public class MooreLikeFSM extends SubsystemBase {
             m_currentState = state; // The state has to record its "currentState" for use in the
                                     // transition since there is no other good way to get
                                     // automatically the current state for the Trigger.
-            SmartDashboard.putString("FSM entry action "+this, state.name());
+            SmartDashboard.putString(m_entryKey, state.name());
           },
 
       // steady-state action
         () ->
           {
-            LEDPattern currentStateSignal = oneLEDSmeared(state.ordinal(), m_color, Color.kBlack);
-            m_robotSignals.setSignal(currentStateSignal).schedule();
-            SmartDashboard.putString("FSM steady-state action "+this, state.name());
+            m_light = state.ordinal();
+            if (m_robotSignals.getCurrentCommand() != m_scannerSignal) {
+              m_scannerSignal.schedule(); // once; scheduling every iteration makes garbage
+            }
+            SmartDashboard.putString(m_steadyStateKey, state.name());
           },
 
       // exit action
         interrupted ->
           {
-            SmartDashboard.putString("FSM exit action "+this, state.name());
+            SmartDashboard.putString(m_exitKey, state.name());
           },
 
       // finish determination
@@ -240,41 +253,21 @@ public class MooreLikeFSM extends SubsystemBase {
   }
  
   /**
-   * Turn on one bright LED in the string view.
-   * Turn on its neighbors dimly. It appears smeared.
+   * Turn on one LED in the string view, the head of the scanner's comet. The comet's tail is
+   * added by giving this pattern persistence, so the LEDs it passed over fade out slowly like the
+   * real Knight Rider Kitt Scanner.  https://www.youtube.com/watch?v=usui7ECHPNQ
    * 
-   * A simple cheat of the real Knight Rider Kitt Scanner which has a slowly
-   * diminishing comet tail.  https://www.youtube.com/watch?v=usui7ECHPNQ
-   * 
-   * @param index which LED to turn on
+   * @param light supplies which LED to turn on
    * @param colorForeground color of the on LED
-   * @param colorBackground color of the off LEDs
    * @return Pattern to apply to the LED view
    */
-  private static final LEDPattern oneLEDSmeared(int light, Color colorForeground, Color colorBackground) {
-    int index = light;
-    final int slightlyDim = 180;
-    final int dim = 120;
-
+  private static final LEDPattern oneLED(IntSupplier light, Color colorForeground) {
     return (reader, writer) -> {
+      int index = light.getAsInt();
       int bufLen = reader.getLength();
 
       for (int led = 0; led < bufLen; led++) {
-        if(led == index) {
-          writer.setLED(led, colorForeground);              
-        } else if((led == index-2 && index-2 >= 0) || (led == index+2 && index+2 < bufLen)) {
-          writer.setRGB(led,
-           (int) (colorForeground.red * dim),
-           (int) (colorForeground.green * dim),
-           (int) (colorForeground.blue * dim));
-        } else if((led == index-1 && index-1 >= 0) || (led == index+1 && index+1 < bufLen)) {
-          writer.setRGB(led,
-           (int) (colorForeground.red * slightlyDim),
-           (int) (colorForeground.green * slightlyDim),
-           (int) (colorForeground.blue * slightlyDim));
-        } else {
-          writer.setLED(led, colorBackground);              
-        }
+        writer.setLED(led, led == index ? colorForeground : Color.kBlack);
       }
     };
   }
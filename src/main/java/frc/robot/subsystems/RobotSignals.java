@@ -17,14 +17,30 @@ package frc.robot.subsystems;
  * there is no similar management of LED Patterns.
  */
 
+import static edu.wpi.first.units.Units.Seconds;
+
 import frc.robot.AddressableLED;
 import frc.robot.AddressableLEDBuffer;
 import frc.robot.AddressableLEDBufferView;
+import frc.robot.LEDColorCorrection;
+import frc.robot.LEDFramePublisher;
+import frc.robot.LEDOutput;
 import frc.robot.LEDPattern;
+import frc.robot.LEDPowerLimiter;
+import frc.robot.LEDTimeline;
 
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /*
  * All Command factories are "public."
  *
@@ -49,8 +65,11 @@ public class RobotSignals {
     LEDPattern get();
   }
 
+  private static final int kAddressableLedPwmPort = 1;
   private final AddressableLED m_strip;
   private final AddressableLEDBuffer m_bufferLED;
+  private final LEDPowerLimiter m_powerLimiter;
+  private final NetworkTable m_nt;
   private static int m_length = 0; // length of the buffer - last LED used + 1 for the number 0 LED
 
   // location in the LED string is defined and reserved for all examples even if not selected to run
@@ -100,7 +119,19 @@ public class RobotSignals {
     }
   }
 
+  /**
+   * Create the LED views on the roboRIO's LED driver
+   */
   public RobotSignals() {
+    this(LEDOutput.hal(kAddressableLedPwmPort));
+  }
+
+  /**
+   * Create the LED views on any LED output, such as a frame capture for tests and simulation
+   *
+   * @param output where to send the LED frames
+   */
+  public RobotSignals(LEDOutput output) {
 
     // find number of LEDs used
     for(LEDViewPlacement index : LEDViewPlacement.values())
@@ -108,10 +139,19 @@ public class RobotSignals {
       m_length = Math.max(m_length, index.last + 1); // position is zero-based; + 1 for length
     }
 
-    // start updating the physical LED strip
-    final int addressableLedPwmPort = 1;
-    m_strip = new AddressableLED(addressableLedPwmPort);
+    // start updating the physical LED strip, and publish what it shows for dashboards and logs
+    m_nt = NetworkTableInstance.getDefault().getTable("Team4237").getSubTable("LEDs");
+    final double telemetryPeriod = 0.1; // seconds
+    m_strip =
+        new AddressableLED(new LEDFramePublisher(output, m_nt, Seconds.of(telemetryPeriod)));
     m_strip.setLength(m_length);
+    // correct the output for how our eyes see LED brightness; the buffer itself isn't changed
+    final double gamma = 2.2;
+    m_strip.setColorCorrection(LEDColorCorrection.gamma(gamma));
+    // dim the whole strip if it would draw more than its power supply can spare
+    final double currentBudgetMilliamps = 2000.0;
+    m_powerLimiter = new LEDPowerLimiter(currentBudgetMilliamps);
+    m_strip.setPowerLimiter(m_powerLimiter);
     m_strip.start();
     m_bufferLED = new AddressableLEDBuffer(m_length); // buffer for all of the LEDs
 
@@ -135,15 +175,25 @@ public class RobotSignals {
    */
   public void runAfterCommands() {
     m_strip.setData(m_bufferLED); // run periodically to send the buffer to the LEDs
+
+    SmartDashboard.putNumber("LED requested mA", m_powerLimiter.getRequestedMilliamps());
+    SmartDashboard.putNumber("LED output mA", m_powerLimiter.getOutputMilliamps());
   }
 
   /** LED view resource (subsystem) */
   public class LEDView extends SubsystemBase {
 
     private final AddressableLEDBufferView m_view;
+    private final IntegerPublisher m_patternIdPublisher;
+    // keyed by identity, since patterns don't override equals; entries go away with their patterns
+    private final Map<LEDPattern, Long> m_patternIds = new WeakHashMap<>();
+    private long m_nextPatternId = 1;
+    private LEDPattern m_publishedPattern;
 
     private LEDView(LEDViewPlacement placement) {
       m_view = m_bufferLED.createView(placement.first, placement.last);
+      m_patternIdPublisher =
+          m_nt.getSubTable(placement.name()).getIntegerTopic("patternId").publish();
     }
 
     /*
@@ -176,7 +226,11 @@ public class RobotSignals {
      * @return Command to apply pattern to LEDs
      */
     public Command setSignal(LEDPattern pattern) {
-      return run(() -> pattern.applyTo(m_view)).ignoringDisable(true).withName("LedSet");
+      var renderer = new PatternRenderer();
+      return new FunctionalCommand(
+              renderer::reset, () -> renderer.render(pattern), interrupted -> {}, () -> false, this)
+          .ignoringDisable(true)
+          .withName("LedSet");
     }
 
     /**
@@ -186,7 +240,38 @@ public class RobotSignals {
      * @return Command to apply pattern to LEDs
      */
     public Command setSignal(LEDPatternSupplier pattern) {
-      return run(() -> pattern.get().applyTo(m_view)).ignoringDisable(true).withName("LedSetS");
+      var renderer = new PatternRenderer();
+      return new FunctionalCommand(
+              renderer::reset,
+              () -> renderer.render(pattern.get()),
+              interrupted -> {},
+              () -> false,
+              this)
+          .ignoringDisable(true)
+          .withName("LedSetS");
+    }
+
+    /**
+     * Play a light show in the view from its beginning - keep running.
+     *
+     * <p>The whole show is this one command, however many keyframes it has.
+     *
+     * @param timeline the light show
+     * @return Command to play the light show on the LEDs
+     */
+    public Command play(LEDTimeline timeline) {
+      var renderer = new PatternRenderer();
+      return new FunctionalCommand(
+              () -> {
+                timeline.restart();
+                renderer.reset();
+              },
+              () -> renderer.render(timeline),
+              interrupted -> {},
+              () -> false,
+              this)
+          .ignoringDisable(true)
+          .withName("LedPlay");
     }
 
     /**
@@ -198,7 +283,7 @@ public class RobotSignals {
      * @return Command to apply pattern to LEDs
      */
     public Command setSignalOnce(LEDPattern pattern) {
-      return runOnce(() -> pattern.applyTo(m_view)).ignoringDisable(true).withName("LedSetO");
+      return runOnce(() -> apply(pattern)).ignoringDisable(true).withName("LedSetO");
     }
 
     /**
@@ -210,7 +295,70 @@ public class RobotSignals {
      * @return Command to apply pattern to LEDs
      */
     public Command setSignalOnce(LEDPatternSupplier pattern) {
-      return runOnce(() -> pattern.get().applyTo(m_view)).ignoringDisable(true).withName("LedSetSO");
+      return runOnce(() -> apply(pattern.get())).ignoringDisable(true).withName("LedSetSO");
+    }
+
+    /*
+     * Private methods
+     */
+
+    /**
+     * Applies a pattern to the view, and publishes which pattern the view shows if it's a different
+     * one from last time.
+     *
+     * <p>Patterns are numbered from 1 in the order the view first shows them, so the same pattern
+     * object keeps its id whenever it's shown again and no two patterns shown by the view share
+     * one. Ids start over with every run of the robot program.
+     *
+     * @param pattern the pattern to display
+     */
+    private void apply(LEDPattern pattern) {
+      pattern.applyTo(m_view);
+      if (pattern != m_publishedPattern) {
+        Long id = m_patternIds.get(pattern);
+        if (id == null) {
+          id = m_nextPatternId++;
+          m_patternIds.put(pattern, id);
+        }
+        m_patternIdPublisher.set(id);
+        m_publishedPattern = pattern;
+      }
+    }
+
+    /**
+     * Applies a pattern to the view only when its output may have changed since it was last
+     * applied. Most signals are static or change only every so often, so most loops have nothing
+     * to render and leave the view (and so the LEDs sent to the strip) untouched.
+     *
+     * <p>Each command has its own renderer, reset whenever the command starts because some other
+     * command may have written the view in the meantime.
+     */
+    private class PatternRenderer {
+      private LEDPattern m_lastPattern;
+      private long m_nextChangeMicros;
+
+      /** Forget what was rendered so the next pattern is applied unconditionally. */
+      private void reset() {
+        m_lastPattern = null;
+      }
+
+      /**
+       * Applies a pattern unless it's the same pattern as last time and it hasn't changed since.
+       * Patterns are compared by identity, so a supplier that builds a new pattern every time is
+       * always applied.
+       *
+       * @param pattern the pattern to display
+       */
+      private void render(LEDPattern pattern) {
+        long now = WPIUtilJNI.now();
+        if (pattern == m_lastPattern && now < m_nextChangeMicros) {
+          return; // the view already shows what the pattern would write
+        }
+
+        apply(pattern);
+        m_lastPattern = pattern;
+        m_nextChangeMicros = pattern.nextChangeTimeMicros(now);
+      }
     }
   } // End LEDView
 }
@@ -0,0 +1,105 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static frc.robot.AllocationAssertions.assertSteadyState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** Views write the right LEDs of their buffer, and writing through them allocates nothing. */
+class AddressableLEDBufferViewTest {
+  private static final int kLength = 300;
+
+  private final AddressableLEDBuffer m_buffer = new AddressableLEDBuffer(kLength);
+
+  @Test
+  void forwardViewWritesItsRange() {
+    var view = m_buffer.createView(8, 15);
+    for (int led = 0; led < view.getLength(); led++) {
+      view.setRGB(led, led + 1, 0, 0);
+    }
+
+    assertEquals(8, view.getLength());
+    for (int led = 0; led < kLength; led++) {
+      int expected = led >= 8 && led <= 15 ? Color.packRGB(led - 7, 0, 0) : 0;
+      assertEquals(expected, m_buffer.getPacked(led), "LED " + led);
+    }
+  }
+
+  @Test
+  void reversedViewWritesItsRangeBackwards() {
+    var view = m_buffer.createView(15, 8);
+    for (int led = 0; led < view.getLength(); led++) {
+      view.setRGB(led, 0, led + 1, 0);
+    }
+
+    assertEquals(8, view.getLength());
+    for (int led = 0; led < kLength; led++) {
+      int expected = led >= 8 && led <= 15 ? Color.packRGB(0, 16 - led, 0) : 0;
+      assertEquals(expected, m_buffer.getPacked(led), "LED " + led);
+    }
+  }
+
+  @Test
+  void reversingAViewTwiceRestoresIt() {
+    var view = m_buffer.createView(40, 47);
+    var twice = view.reversed().reversed();
+    twice.setRGB(0, 0, 0, 255);
+    view.reversed().setRGB(0, 255, 0, 0);
+
+    assertEquals(Color.packRGB(0, 0, 255), m_buffer.getPacked(40));
+    assertEquals(Color.packRGB(255, 0, 0), m_buffer.getPacked(47));
+    assertEquals(Color.packRGB(0, 0, 255), view.getPacked(0));
+    assertEquals(Color.packRGB(255, 0, 0), view.getPacked(7));
+  }
+
+  @Test
+  void patternsWriteOnlyTheirView() {
+    m_buffer.createView(0, 7).setRGB(7, 1, 2, 3);
+    m_buffer.createView(16, 23).setRGB(0, 4, 5, 6);
+
+    LEDPattern.solid(Color.kWhite).applyTo(m_buffer.createView(15, 8));
+
+    assertEquals(Color.packRGB(1, 2, 3), m_buffer.getPacked(7));
+    assertEquals(Color.packRGB(4, 5, 6), m_buffer.getPacked(16));
+    for (int led = 8; led <= 15; led++) {
+      assertEquals(Color.packRGB(255, 255, 255), m_buffer.getPacked(led), "LED " + led);
+    }
+  }
+
+  @Test
+  void writesAllocateNothing() {
+    var forward = m_buffer.createView(0, kLength / 2 - 1);
+    var backward = m_buffer.createView(kLength - 1, kLength / 2);
+    int[] frame = {0};
+
+    assertSteadyState(
+        "view writes",
+        () -> {
+          int hue = frame[0]++ % 180;
+          for (int led = 0; led < forward.getLength(); led++) {
+            forward.setRGB(led, led, hue, 255 - led);
+            backward.setHSV(led, hue, 255, 128);
+            backward.setLED(led, Color.kFirstBlue);
+          }
+        });
+  }
+
+  @Test
+  void patternsOnViewsAllocateNothing() {
+    var forward = m_buffer.createView(0, kLength / 2 - 1);
+    var backward = m_buffer.createView(kLength - 1, kLength / 2);
+    var rainbow = LEDPattern.rainbow(255, 255);
+    var masked = rainbow.mask(LEDPattern.progressMaskLayer(() -> 0.5)).reversed();
+
+    assertSteadyState(
+        "patterns on views",
+        () -> {
+          rainbow.applyTo(forward);
+          masked.applyTo(backward);
+        });
+  }
+}
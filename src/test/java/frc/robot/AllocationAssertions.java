@@ -0,0 +1,86 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Assertions that code run every robot loop, such as rendering an LED frame, is in its steady
+ * state: it allocates nothing, and it takes no longer than {@link #kFrameBudgetMicros}.
+ *
+ * <p>The code is warmed up first so the JIT has compiled it, then run for several rounds of frames,
+ * and the best round counts; a garbage collection or recompile that lands in one round doesn't
+ * fail the test, but code that allocates or is slow every frame fails every round. Allocations are
+ * counted with {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}, so only
+ * the test's own thread counts; tests are skipped on JVMs that can't count them.
+ *
+ * <p>Allocations are always checked. The time is only checked when the system property {@value
+ * #kCheckTimingProperty} is true ({@code ./gradlew test -PcheckTiming}), on a machine quiet enough
+ * for wall-clock times to mean something; elsewhere a busy CI runner would fail tests at random.
+ */
+public final class AllocationAssertions {
+  private AllocationAssertions() {
+    throw new UnsupportedOperationException("This is a utility class!");
+  }
+
+  /** The budget for a frame of work done every robot loop: 1% of a 20 ms robot loop. */
+  public static final double kFrameBudgetMicros = 200;
+
+  /** The system property that turns on the timing check. */
+  public static final String kCheckTimingProperty = "frc.robot.checkTiming";
+
+  private static final int kWarmupFrames = 10_000;
+  private static final int kMeasuredFrames = 2_000;
+  private static final int kRounds = 5;
+
+  /**
+   * Asserts that a frame allocates nothing and, if timing is checked, takes no longer than {@link
+   * #kFrameBudgetMicros} on average.
+   *
+   * @param name what the frame is, for the failure message
+   * @param frame the code run every frame
+   */
+  public static void assertSteadyState(String name, Runnable frame) {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(
+        threads.isThreadAllocatedMemorySupported(), "Allocations can't be counted on this JVM");
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    for (int i = 0; i < kWarmupFrames; i++) {
+      frame.run();
+    }
+
+    long leastBytes = Long.MAX_VALUE;
+    long leastNanos = Long.MAX_VALUE;
+    for (int round = 0; round < kRounds; round++) {
+      long startBytes = threads.getCurrentThreadAllocatedBytes();
+      long startNanos = System.nanoTime();
+      for (int i = 0; i < kMeasuredFrames; i++) {
+        frame.run();
+      }
+      long nanos = System.nanoTime() - startNanos;
+      long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+      leastBytes = Math.min(leastBytes, bytes);
+      leastNanos = Math.min(leastNanos, nanos);
+    }
+
+    // anything allocated every frame is at least 16 bytes a frame; less than a byte a frame is the
+    // odd bit of bookkeeping in the JVM, not the code under test
+    long bytes = leastBytes;
+    assertTrue(
+        bytes < kMeasuredFrames,
+        () -> name + " allocated " + bytes + " bytes in " + kMeasuredFrames + " frames");
+
+    if (Boolean.getBoolean(kCheckTimingProperty)) {
+      double micros = leastNanos / 1000.0 / kMeasuredFrames;
+      assertTrue(
+          micros <= kFrameBudgetMicros,
+          () -> name + " took " + micros + " us a frame, over " + kFrameBudgetMicros + " us");
+    }
+  }
+}
@@ -0,0 +1,55 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A capture keeps either the colors the patterns wrote or what the LEDs show, whatever color
+ * correction and power limiting the strip does, and its searches find the colors it keeps.
+ */
+class LEDFrameCaptureTest {
+  private static final int kLength = 56;
+  private static final int kBlue = Color.packRGB(0, 0, 200);
+
+  /**
+   * Sends a frame of all blue through a strip that corrects and limits it as the robot's does.
+   *
+   * @param stage which frames the capture keeps
+   * @return the capture
+   */
+  private static LEDFrameCapture captureBlueFrame(LEDFrameCapture.Stage stage) {
+    var capture = new LEDFrameCapture(4, kLength, stage);
+    var led = new AddressableLED(capture);
+    led.setColorCorrection(LEDColorCorrection.gamma(2.2));
+    led.setPowerLimiter(new LEDPowerLimiter(100));
+    led.setLength(kLength);
+    var buffer = new AddressableLEDBuffer(kLength);
+    for (int i = 0; i < kLength; i++) {
+      buffer.setPacked(i, kBlue);
+    }
+    led.setData(buffer);
+    return capture;
+  }
+
+  @Test
+  void writtenFramesKeepThePatternsColors() {
+    var capture = captureBlueFrame(LEDFrameCapture.Stage.kWritten);
+
+    assertEquals(kBlue, capture.getPacked(0, 0));
+    assertEquals(0, capture.findFirst(0, kLength - 1, kBlue, 0));
+  }
+
+  @Test
+  void shownFramesAreCorrectedAndLimited() {
+    var capture = captureBlueFrame(LEDFrameCapture.Stage.kShown);
+
+    assertNotEquals(kBlue, capture.getPacked(0, 0));
+    assertEquals(LEDFrameCapture.kNotFound, capture.findFirst(0, kLength - 1, kBlue, 0));
+  }
+}
@@ -0,0 +1,219 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static edu.wpi.first.units.Units.Value;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The combinators rewritten as a pattern graph light the same LEDs as the per-LED definitions they
+ * replaced, both on a whole buffer, where they use the bulk operations, and on a reversed view,
+ * where they go LED by LED. Patterns that keep state per view keep it under the combinators too.
+ */
+class LEDPatternNodeTest {
+  private static final int kLength = 20;
+
+  /**
+   * A different color at every LED, off at every third one so overlays have somewhere to show
+   * through.
+   */
+  private static int colorA(int led) {
+    return led % 3 == 0 ? 0 : Color.packRGB(led * 12, 255 - led * 12, 200);
+  }
+
+  private static int colorB(int led) {
+    return Color.packRGB(255 - led * 7, 30 + led, led * 13);
+  }
+
+  private static final LEDPattern kPatternA = pattern(LEDPatternNodeTest::colorA);
+  private static final LEDPattern kPatternB = pattern(LEDPatternNodeTest::colorB);
+
+  private static LEDPattern pattern(IntUnaryOperator color) {
+    return (reader, writer) -> {
+      for (int led = 0; led < reader.getLength(); led++) {
+        int rgb = color.applyAsInt(led);
+        writer.setRGB(led, red(rgb), green(rgb), blue(rgb));
+      }
+    };
+  }
+
+  private static int red(int rgb) {
+    return Color.unpackRGB(rgb, Color.RGBChannel.kRed);
+  }
+
+  private static int green(int rgb) {
+    return Color.unpackRGB(rgb, Color.RGBChannel.kGreen);
+  }
+
+  private static int blue(int rgb) {
+    return Color.unpackRGB(rgb, Color.RGBChannel.kBlue);
+  }
+
+  /**
+   * Multiplies each channel as atBrightness does: 8.8 fixed point, saturating at 255.
+   *
+   * @param rgb the packed color
+   * @param multiplier the brightness multiplier
+   * @return the scaled packed color
+   */
+  private static int scaled(int rgb, double multiplier) {
+    int m = Color.toFixedPoint(multiplier);
+    return Color.packRGB(
+        Math.min((red(rgb) * m) >> 8, 255),
+        Math.min((green(rgb) * m) >> 8, 255),
+        Math.min((blue(rgb) * m) >> 8, 255));
+  }
+
+  /**
+   * Applies a pattern to a whole buffer and to a reversed view of another, and checks every LED of
+   * both against the expected colors.
+   *
+   * @param name the name to report failures with
+   * @param expected the expected color of each LED
+   * @param pattern the pattern to check
+   */
+  private static void assertLEDs(String name, IntUnaryOperator expected, LEDPattern pattern) {
+    var buffer = new AddressableLEDBuffer(kLength);
+    pattern.applyTo(buffer);
+    var backing = new AddressableLEDBuffer(kLength + 8);
+    var view = backing.createView(kLength + 3, 4);
+    pattern.applyTo(view);
+
+    for (int led = 0; led < kLength; led++) {
+      int rgb = expected.applyAsInt(led);
+      assertEquals(rgb, buffer.getPacked(led), name + " on a buffer, LED " + led);
+      assertEquals(rgb, view.getPacked(led), name + " on a reversed view, LED " + led);
+    }
+  }
+
+  @Test
+  void reversingTwiceRestoresThePattern() {
+    var twice = kPatternA.reversed().reversed();
+
+    assertEquals("pattern", twice.toString());
+    assertLEDs("reversed twice", LEDPatternNodeTest::colorA, twice);
+  }
+
+  @Test
+  void reversedThenOffset() {
+    assertLEDs("reversed", led -> colorA(kLength - 1 - led), kPatternA.reversed());
+    // LED i of the source lands on (length - 1 - i) + 5
+    assertLEDs(
+        "reversed then offset",
+        led -> colorA(kLength - 1 - Math.floorMod(led - 5, kLength)),
+        kPatternA.reversed().offsetBy(5));
+  }
+
+  @Test
+  void offsetsAddUp() {
+    var merged = kPatternA.offsetBy(3).offsetBy(-10);
+
+    assertEquals("pattern.offsetBy(-7)", merged.toString());
+    // LED i of the source lands on i - 7
+    assertLEDs("offset twice", led -> colorA(Math.floorMod(led + 7, kLength)), merged);
+  }
+
+  @Test
+  void brightnessMultipliersMultiply() {
+    var fused = kPatternA.atBrightness(Value.of(0.5)).atBrightness(Value.of(0.5));
+
+    assertEquals("pattern.atBrightness(0.25)", fused.toString());
+    assertLEDs("quarter brightness", led -> scaled(colorA(led), 0.25), fused);
+  }
+
+  @Test
+  void brightnessRoundsTheSameWayOnBuffersAndViews() {
+    // 200 * 0.7 is 140, but 200 at 70% in 8.8 fixed point is 139; either way, it has to be the same
+    // on a buffer as on a view
+    assertEquals(139, red(scaled(Color.packRGB(200, 0, 0), 0.7)));
+    assertLEDs(
+        "70% brightness", led -> scaled(colorB(led), 0.7), kPatternB.atBrightness(Value.of(0.7)));
+    assertLEDs(
+        "150% brightness", led -> scaled(colorB(led), 1.5), kPatternB.atBrightness(Value.of(1.5)));
+    assertLEDs(
+        "reversed at 70% brightness",
+        led -> scaled(colorB(kLength - 1 - led), 0.7),
+        kPatternB.reversed().atBrightness(Value.of(0.7)));
+  }
+
+  /**
+   * Shows a pattern on two views of different lengths for two frames, then checks that a trail
+   * lit only on the first frame is still showing on both.
+   *
+   * @param name the name to report failures with
+   * @param combine builds the pattern to check around one that keeps a trail per view
+   * @param trailLED where the trail shows in each view
+   */
+  private static void assertTrailsPerView(
+      String name, UnaryOperator<LEDPattern> combine, int trailLED) {
+    boolean[] firstFrame = {true};
+    LEDPattern flash =
+        (reader, writer) -> {
+          for (int led = 0; led < reader.getLength(); led++) {
+            writer.setRGB(led, firstFrame[0] && led == 0 ? 255 : 0, 0, 0);
+          }
+        };
+    var pattern = combine.apply(flash.withPersistence(Seconds.of(1000)));
+    var backing = new AddressableLEDBuffer(kLength);
+    var first = backing.createView(0, 4);
+    var second = backing.createView(10, 17);
+
+    pattern.applyTo(first);
+    pattern.applyTo(second);
+    firstFrame[0] = false;
+    pattern.applyTo(first);
+    pattern.applyTo(second);
+
+    assertTrue(red(first.getPacked(trailLED)) > 200, name + " lost the first view's trail");
+    assertTrue(red(second.getPacked(trailLED)) > 200, name + " lost the second view's trail");
+  }
+
+  @Test
+  void offsetKeepsStatePerView() {
+    assertTrailsPerView("offset", pattern -> pattern.offsetBy(1), 1);
+  }
+
+  @Test
+  void blendAndMaskKeepStatePerView() {
+    // blending the trail with itself only keeps it bright if both halves kept it
+    assertTrailsPerView("blend", pattern -> pattern.blend(pattern), 0);
+    assertTrailsPerView("mask", pattern -> LEDPattern.solid(Color.kWhite).mask(pattern), 0);
+  }
+
+  @Test
+  void overlayShowsTheBaseWhereThePatternIsOff() {
+    assertLEDs(
+        "overlay",
+        led -> colorA(led) != 0 ? colorA(led) : colorB(led),
+        kPatternA.overlayOn(kPatternB));
+  }
+
+  @Test
+  void blendAveragesEachChannel() {
+    assertLEDs(
+        "blend",
+        led ->
+            Color.packRGB(
+                (red(colorA(led)) + red(colorB(led))) / 2,
+                (green(colorA(led)) + green(colorB(led))) / 2,
+                (blue(colorA(led)) + blue(colorB(led))) / 2),
+        kPatternA.blend(kPatternB));
+  }
+
+  @Test
+  void maskAndsEachChannel() {
+    assertLEDs("mask", led -> colorA(led) & colorB(led), kPatternA.mask(kPatternB));
+    assertLEDs(
+        "mask of a reversed pattern",
+        led -> colorA(kLength - 1 - led) & colorB(led),
+        kPatternA.reversed().mask(kPatternB));
+  }
+}
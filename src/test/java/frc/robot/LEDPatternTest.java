@@ -0,0 +1,211 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Meters;
+import static edu.wpi.first.units.Units.Percent;
+import static edu.wpi.first.units.Units.Second;
+import static edu.wpi.first.units.Units.Seconds;
+import static frc.robot.AllocationAssertions.assertSteadyState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every frame of every pattern allocates nothing and fits in the frame budget of {@link
+ * AllocationAssertions}. The clock is mocked and advanced by one robot loop per frame, so animated
+ * patterns step as they would on the robot.
+ */
+class LEDPatternTest {
+  private static final int kLength = 300;
+
+  private static final long kLoopMicros = 20_000;
+
+  private final AddressableLEDBuffer m_buffer = new AddressableLEDBuffer(kLength);
+  private long m_now;
+
+  @BeforeEach
+  void mockTime() {
+    WPIUtilJNI.enableMockTime();
+    m_now = 0;
+    WPIUtilJNI.setMockTime(m_now);
+  }
+
+  @AfterEach
+  void restoreTime() {
+    WPIUtilJNI.disableMockTime();
+  }
+
+  private void assertRendersInSteadyState(String name, LEDPattern pattern) {
+    assertSteadyState(
+        name,
+        () -> {
+          m_now += kLoopMicros;
+          WPIUtilJNI.setMockTime(m_now);
+          pattern.applyTo(m_buffer);
+        });
+  }
+
+  /**
+   * Checks a pattern shown on two views of different lengths every frame. Patterns that render
+   * off to the side keep a scratch buffer for each view, rather than the views taking turns
+   * reallocating one.
+   */
+  private void assertRendersOnTwoViewsInSteadyState(String name, LEDPattern pattern) {
+    var first = m_buffer.createView(0, 99);
+    var second = m_buffer.createView(100, 249);
+    assertSteadyState(
+        name,
+        () -> {
+          m_now += kLoopMicros;
+          WPIUtilJNI.setMockTime(m_now);
+          pattern.applyTo(first);
+          pattern.applyTo(second);
+        });
+  }
+
+  @Test
+  void solidWritesEveryLED() {
+    LEDPattern.solid(Color.kRed).applyTo(m_buffer);
+
+    for (int led = 0; led < kLength; led++) {
+      assertEquals(Color.packRGB(255, 0, 0), m_buffer.getPacked(led));
+    }
+  }
+
+  @Test
+  void solid() {
+    assertRendersInSteadyState("solid", LEDPattern.solid(Color.kOrange));
+  }
+
+  @Test
+  void gradients() {
+    assertRendersInSteadyState(
+        "continuous gradient",
+        LEDPattern.gradient(LEDPattern.GradientType.kContinuous, Color.kRed, Color.kBlue));
+    assertRendersInSteadyState(
+        "discontinuous gradient",
+        LEDPattern.gradient(
+            LEDPattern.GradientType.kDiscontinuous, Color.kRed, Color.kGreen, Color.kBlue));
+  }
+
+  @Test
+  void steps() {
+    assertRendersInSteadyState(
+        "steps", LEDPattern.steps(Map.of(0, Color.kRed, 0.25, Color.kWhite, 0.5, Color.kBlue)));
+  }
+
+  @Test
+  void progressMask() {
+    double[] progress = {0};
+    assertRendersInSteadyState(
+        "progress mask",
+        LEDPattern.solid(Color.kGreen)
+            .mask(
+                LEDPattern.progressMaskLayer(
+                    () -> {
+                      progress[0] = (progress[0] + 0.01) % 1;
+                      return progress[0];
+                    })));
+  }
+
+  @Test
+  void rainbow() {
+    assertRendersInSteadyState("rainbow", LEDPattern.rainbow(255, 128));
+  }
+
+  @Test
+  void palettes() {
+    assertRendersInSteadyState(
+        "indexed", LEDPattern.indexed(LEDIndexPattern.ramp(), LEDPalette.rainbow(255, 255)));
+    assertRendersInSteadyState(
+        "palette cycle",
+        LEDPattern.paletteCycle(
+            LEDIndexPattern.ramp(), LEDPalette.gradient(Color.kRed, Color.kBlue), Seconds.of(2)));
+  }
+
+  @Test
+  void procedural() {
+    assertRendersInSteadyState("fire", LEDPattern.fire(LEDPalette.heat(), 55, 120));
+    assertRendersInSteadyState(
+        "plasma", LEDPattern.plasma(LEDPalette.rainbow(255, 255), Seconds.of(4)));
+    assertRendersInSteadyState(
+        "noise",
+        LEDPattern.noise(LEDPalette.gradient(Color.kBlue, Color.kAqua), 20, Seconds.of(1)));
+  }
+
+  @Test
+  void timeModifiers() {
+    LEDPattern base = LEDPattern.rainbow(255, 255);
+    assertRendersInSteadyState("blink", base.blink(Seconds.of(0.5), Seconds.of(0.25)));
+    boolean[] signal = {false};
+    assertRendersInSteadyState(
+        "synchronized blink",
+        base.synchronizedBlink(
+            () -> {
+              signal[0] = !signal[0];
+              return signal[0];
+            }));
+    assertRendersInSteadyState("breathe", base.breathe(Seconds.of(2)));
+    assertRendersInSteadyState("persistence", base.withPersistence(Seconds.of(0.5)));
+    assertRendersInSteadyState(
+        "scroll, relative", base.scrollAtRelativeSpeed(Percent.per(Second).of(25)));
+    assertRendersInSteadyState(
+        "scroll, absolute",
+        base.scrollAtAbsoluteSpeed(Meters.per(Second).of(0.5), Meters.of(1.0 / 60)));
+  }
+
+  @Test
+  void spaceModifiers() {
+    LEDPattern base =
+        LEDPattern.gradient(LEDPattern.GradientType.kContinuous, Color.kRed, Color.kBlue);
+    assertRendersInSteadyState("reversed", base.reversed());
+    assertRendersInSteadyState("offset", base.offsetBy(7));
+    assertRendersInSteadyState("brightness", base.atBrightness(Percent.of(50)));
+  }
+
+  @Test
+  void offsetsOnViewsOfDifferentLengths() {
+    assertRendersOnTwoViewsInSteadyState(
+        "offset on two views", LEDPattern.rainbow(255, 255).offsetBy(7));
+    assertRendersOnTwoViewsInSteadyState(
+        "fire, offset, on two views", LEDPattern.fire(LEDPalette.heat(), 55, 120).offsetBy(3));
+  }
+
+  @Test
+  void combinations() {
+    LEDPattern base = LEDPattern.rainbow(255, 255);
+    LEDPattern other = LEDPattern.solid(Color.kBlue).breathe(Seconds.of(1));
+    assertRendersInSteadyState("overlay", other.overlayOn(base));
+    assertRendersInSteadyState("blend", base.blend(other));
+    assertRendersInSteadyState("mask", base.mask(other));
+  }
+
+  @Test
+  void combinationsOnViewsOfDifferentLengths() {
+    LEDPattern base = LEDPattern.rainbow(255, 255);
+    LEDPattern fire = LEDPattern.fire(LEDPalette.heat(), 55, 120);
+    assertRendersOnTwoViewsInSteadyState("blend on two views", base.blend(fire));
+    assertRendersOnTwoViewsInSteadyState("mask on two views", base.mask(fire));
+    assertRendersOnTwoViewsInSteadyState(
+        "persistence on two views", fire.withPersistence(Seconds.of(0.5)));
+  }
+
+  @Test
+  void timeline() {
+    LEDTimeline show =
+        new LEDTimeline()
+            .at(Seconds.of(0), LEDPattern.solid(Color.kRed))
+            .at(Seconds.of(2), LEDPattern.solid(Color.kBlue), LEDTimeline.Easing.kEaseInOut)
+            .at(Seconds.of(3), LEDPattern.rainbow(255, 255).blink(Seconds.of(0.25)))
+            .at(Seconds.of(4), LEDPattern.solid(Color.kWhite), LEDTimeline.Easing.kLinear)
+            .loop(Seconds.of(6));
+    assertRendersInSteadyState("timeline", show);
+  }
+}
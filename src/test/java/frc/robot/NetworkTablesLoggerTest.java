@@ -0,0 +1,226 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static frc.robot.AllocationAssertions.assertSteadyState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Topics are recorded by the rule of the longest allowed prefix they're under, repeats and values
+ * that come too soon are left out as their prefix says, and topics under no allowed prefix aren't
+ * recorded at all. Recording the values that arrived since the last poll allocates nothing,
+ * whichever way their prefix records them. The clock is mocked, and values are read back from the
+ * DataLog.
+ */
+class NetworkTablesLoggerTest {
+  /** Topics per prefix; enough that the logger has to grow its table of topics. */
+  private static final int kTopicsPerPrefix = 20;
+
+  private NetworkTableInstance m_instance;
+  private Path m_logDirectory;
+  private DataLog m_log; // null once closed to read it back
+  private NetworkTableListenerPoller m_poller;
+  private final List<IntegerPublisher> m_publishers = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    WPIUtilJNI.enableMockTime();
+    WPIUtilJNI.setMockTime(1_000_000);
+    m_instance = NetworkTableInstance.create();
+    m_logDirectory = Files.createTempDirectory("NetworkTablesLoggerTest");
+    m_log = new DataLog(m_logDirectory.toString(), "test.wpilog");
+    m_poller = new NetworkTableListenerPoller(m_instance);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    m_publishers.forEach(IntegerPublisher::close);
+    m_poller.close();
+    m_instance.close();
+    if (m_log != null) {
+      m_log.close();
+    }
+    Files.deleteIfExists(m_logDirectory.resolve("test.wpilog"));
+    Files.deleteIfExists(m_logDirectory);
+    WPIUtilJNI.disableMockTime();
+  }
+
+  /**
+   * Publishes to a topic, keeping values the same as the one before so the logger sees them.
+   *
+   * @param name the topic name
+   * @return the publisher
+   */
+  private IntegerPublisher publish(String name) {
+    IntegerPublisher publisher =
+        m_instance.getIntegerTopic(name).publish(PubSubOption.keepDuplicates(true));
+    m_publishers.add(publisher);
+    return publisher;
+  }
+
+  /**
+   * Moves the clock on, then sets a value at the time now.
+   *
+   * @param publisher the topic's publisher
+   * @param value the value
+   * @param afterSeconds how far to move the clock on
+   */
+  private static void setLater(IntegerPublisher publisher, long value, double afterSeconds) {
+    WPIUtilJNI.setMockTime(WPIUtilJNI.now() + (long) (afterSeconds * 1e6));
+    publisher.set(value, WPIUtilJNI.now());
+  }
+
+  /**
+   * Closes the DataLog and reads back what was recorded.
+   *
+   * @return the values recorded, by entry name
+   * @throws IOException if the log can't be read
+   */
+  private Map<String, List<Long>> readLog() throws IOException {
+    m_log.close();
+    m_log = null;
+
+    Map<Integer, List<Long>> byEntry = new HashMap<>();
+    Map<String, List<Long>> byName = new HashMap<>();
+    var reader = new DataLogReader(m_logDirectory.resolve("test.wpilog").toString());
+    assertTrue(reader.isValid(), "the log can't be read back");
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        List<Long> values = new ArrayList<>();
+        byEntry.put(record.getStartData().entry, values);
+        byName.put(record.getStartData().name, values);
+      } else if (!record.isControl()) {
+        byEntry.get(record.getEntry()).add(record.getInteger());
+      }
+    }
+    return byName;
+  }
+
+  /**
+   * Publishes a value to each of a prefix's topics.
+   *
+   * @param prefix the prefix the topics are under
+   */
+  private void publishUnder(String prefix) {
+    for (int i = 0; i < kTopicsPerPrefix; i++) {
+      IntegerPublisher publisher = m_instance.getIntegerTopic(prefix + i).publish();
+      publisher.set(i);
+      m_publishers.add(publisher);
+    }
+  }
+
+  @Test
+  void topicsFollowTheirLongestPrefix() throws IOException {
+    var logger =
+        new NetworkTablesLogger(m_poller, m_log)
+            .allow("/Test/")
+            .allow("/Test/Changes/", Seconds.of(0), true);
+    IntegerPublisher all = publish("/Test/all");
+    IntegerPublisher changes = publish("/Test/Changes/changes");
+    for (long value : new long[] {1, 1, 2}) {
+      setLater(all, value, 0.02);
+      setLater(changes, value, 0.02);
+      logger.poll();
+    }
+
+    Map<String, List<Long>> log = readLog();
+    assertEquals(List.of(1L, 1L, 2L), log.get("NT:/Test/all"));
+    assertEquals(List.of(1L, 2L), log.get("NT:/Test/Changes/changes"));
+  }
+
+  @Test
+  void changeOnlySkipsRepeats() throws IOException {
+    var logger = new NetworkTablesLogger(m_poller, m_log).allow("/Test/", Seconds.of(0), true);
+    IntegerPublisher publisher = publish("/Test/value");
+    for (long value : new long[] {5, 5, 6, 6, 6, 5}) {
+      setLater(publisher, value, 0.02);
+      logger.poll();
+    }
+
+    assertEquals(3, logger.getRecordedCount());
+    assertEquals(3, logger.getSkippedCount());
+    assertEquals(List.of(5L, 6L, 5L), readLog().get("NT:/Test/value"));
+  }
+
+  @Test
+  void valuesTooSoonAreHeldAndTheLatestIsRecorded() throws IOException {
+    var logger = new NetworkTablesLogger(m_poller, m_log).allow("/Test/", Seconds.of(0.1), false);
+    IntegerPublisher publisher = publish("/Test/value");
+    setLater(publisher, 1, 0);
+    logger.poll();
+    setLater(publisher, 2, 0.02);
+    logger.poll();
+    setLater(publisher, 3, 0.02);
+    logger.poll();
+    assertEquals(1, logger.getRecordedCount(), "recorded a value before the interval was up");
+
+    WPIUtilJNI.setMockTime(WPIUtilJNI.now() + 60_000); // 0.1 s after the first value
+    logger.poll();
+
+    assertEquals(2, logger.getRecordedCount());
+    assertEquals(1, logger.getSkippedCount());
+    assertEquals(List.of(1L, 3L), readLog().get("NT:/Test/value"));
+  }
+
+  @Test
+  void topicsUnderNoAllowedPrefixAreIgnored() throws IOException {
+    var logger = new NetworkTablesLogger(m_poller, m_log).allow("/Test/In/");
+    setLater(publish("/Test/In/value"), 1, 0.02);
+    setLater(publish("/Test/Out/value"), 2, 0.02);
+    setLater(publish("/Other"), 3, 0.02);
+    logger.poll();
+
+    assertEquals(1, logger.getRecordedCount());
+    Map<String, List<Long>> log = readLog();
+    assertEquals(List.of(1L), log.get("NT:/Test/In/value"));
+    assertFalse(log.containsKey("NT:/Test/Out/value"), "recorded a topic outside the prefix");
+    assertFalse(log.containsKey("NT:/Other"), "recorded a topic outside the prefix");
+  }
+
+  @Test
+  void pollAllocatesNothing() {
+    var logger =
+        new NetworkTablesLogger(m_poller, m_log)
+            .allow("/Test/All/")
+            .allow("/Test/Changes/", Seconds.of(0), true)
+            .allow("/Test/Slow/", Seconds.of(0.1), false);
+    publishUnder("/Test/All/");
+    publishUnder("/Test/Changes/");
+    publishUnder("/Test/Slow/");
+
+    // the events are read here, not by the logger, because reading them allocates them; the same
+    // ones are then offered every poll, so values are recorded, skipped as unchanged and held
+    NetworkTableEvent[] events = m_poller.readQueue();
+    assertTrue(events.length >= 3 * kTopicsPerPrefix, "only " + events.length + " events");
+    logger.poll(events);
+
+    assertSteadyState("poll", () -> logger.poll(events));
+    assertTrue(logger.getRecordedCount() > 0, "nothing recorded");
+    assertTrue(logger.getSkippedCount() > 0, "nothing skipped");
+  }
+}
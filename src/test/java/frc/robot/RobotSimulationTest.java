@@ -0,0 +1,106 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static frc.robot.subsystems.RobotSignalsSimulation.knightRiderHead;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.SimulationRunner.CommandEvent;
+import frc.robot.SimulationRunner.CommandEventKind;
+import frc.robot.SimulationRunner.Mode;
+import frc.robot.subsystems.HistoryColorChanges;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Long runs of the whole robot on simulated time: each demonstration behaves over minutes as it
+ * does in the first few seconds.
+ */
+class RobotSimulationTest {
+  private static final double kLoopSeconds = SimulationRunner.kLoopSeconds;
+
+  private static final double kChangeColorPeriod = 2.0; // HistoryFSM's timing
+  private static final double kColorLockoutPeriod = 20.0;
+
+  @Test
+  void knightRiderKeepsScanningAfterItsPause() {
+    try (var runner = new SimulationRunner(16)) {
+      // MooreLikeFSMTest covers the pause 10 seconds in and the restart 4 seconds after that
+      runner.runFor(15.0);
+
+      // then it scans for good, one LED every 1/10 of a second
+      int moves = 0;
+      int last = knightRiderHead(runner.getLEDs());
+      for (int loop = 0; loop < 120 / kLoopSeconds; loop++) {
+        runner.runFor(kLoopSeconds);
+        int head = knightRiderHead(runner.getLEDs());
+        if (head != last) {
+          assertEquals(1, Math.abs(head - last), "jumped at " + runner.getTime() + " s");
+          moves++;
+          last = head;
+        }
+      }
+      assertTrue(moves > 0.9 * 120 * 10, "only " + moves + " moves in 2 minutes");
+    }
+  }
+
+  @Test
+  void historyColorsKeepChangingWithoutRepeatsDuringTheLockout() {
+    try (var runner = new SimulationRunner(16)) {
+      // the History FSM runs enabled, started by the "Y" button and then on its own
+      runner.at(1.0, () -> runner.setMode(Mode.kTeleop));
+      runner.at(2.0, () -> runner.getController().setYButton(true));
+      runner.at(2.5, () -> runner.getController().setYButton(false));
+      runner.runFor(3.0);
+
+      // ten lockout periods, where HistoryFSMTest runs three
+      try (var colorChanges = new HistoryColorChanges()) {
+        for (int loop = 0; loop < 10 * kColorLockoutPeriod / kLoopSeconds; loop++) {
+          runner.runFor(kLoopSeconds);
+          colorChanges.poll(runner.getTime());
+        }
+
+        int colors = colorChanges.getCount();
+        assertTrue(
+            colors > 9 * kColorLockoutPeriod / kChangeColorPeriod, "only " + colors + " colors");
+        colorChanges.assertOnTimeWithoutRepeats(
+            kChangeColorPeriod, kColorLockoutPeriod, kLoopSeconds);
+      }
+    }
+  }
+
+  @Test
+  void autonomousSignalRunsUntilTeleop() {
+    try (var runner = new SimulationRunner(16)) {
+      runner.at(1.0, () -> runner.setMode(Mode.kAutonomous));
+      runner.at(16.0, () -> runner.setMode(Mode.kTeleop));
+      runner.runFor(20.0);
+
+      List<CommandEvent> events = runner.getCommandEvents("AutoSignal");
+      assertEquals(2, events.size(), events.toString());
+      assertEquals(CommandEventKind.kInitialize, events.get(0).kind());
+      assertEquals(1.0, events.get(0).time(), 2 * kLoopSeconds);
+      assertEquals(CommandEventKind.kInterrupt, events.get(1).kind());
+      assertEquals(16.0, events.get(1).time(), 2 * kLoopSeconds);
+    }
+  }
+
+  @Test
+  void groupDisjointTestsAllEndInTeleop() {
+    try (var runner = new SimulationRunner(16)) {
+      runner.at(1.0, () -> runner.setMode(Mode.kTeleop));
+      runner.runFor(60.0);
+
+      // every test step that starts ends, on its own or by interruption, and they all run early on
+      List<CommandEvent> events = runner.getCommandEvents("TestDuration");
+      long started = events.stream().filter(e -> e.kind() == CommandEventKind.kInitialize).count();
+      assertTrue(started > 5, "only " + started + " test steps started");
+      assertEquals(started, events.size() - started, "test steps still running");
+      double lastEvent = events.get(events.size() - 1).time();
+      assertTrue(lastEvent < 40.0, "test steps still ending at " + lastEvent + " s");
+    }
+  }
+}
@@ -0,0 +1,302 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the whole {@link Robot} in the simulator on stepped time, so minutes of robot time take
+ * seconds of wall time and every run of the same script loops at the same robot times.
+ *
+ * <p>The robot runs on its own thread as it would on the roboRIO, but the simulator's clock is
+ * paused and only moves when the runner steps it, one robot loop at a time; each step waits for the
+ * robot's loop to finish. Between loops the runner does whatever was scripted for that time, such
+ * as changing the mode or pressing a button on the operator's controller. The LEDs are recorded in
+ * an {@link LEDFrameCapture}, with the colors the patterns wrote rather than the color corrected
+ * and power limited ones, instead of going to the LED driver, and every command that starts,
+ * finishes or is interrupted is recorded as a {@link CommandEvent}.
+ *
+ * <pre>
+ *   try (var runner = new SimulationRunner(10_000)) {
+ *     runner.at(1.0, () -&gt; runner.setMode(SimulationRunner.Mode.kTeleop));
+ *     runner.at(2.0, () -&gt; runner.getController().setYButton(true));
+ *     runner.at(2.5, () -&gt; runner.getController().setYButton(false));
+ *     runner.runFor(180.0);
+ *     // ... look at runner.getLEDs() and runner.getCommandEvents() ...
+ *   }
+ * </pre>
+ *
+ * <p>Times are seconds since the runner was created. There is one command scheduler and one
+ * simulator per JVM, so only one runner may be open at a time; closing it stops and closes the
+ * robot and clears the scheduler for the next one. The robot's random choices, such as the History
+ * FSM's colors, are not repeated from run to run.
+ */
+public final class SimulationRunner implements AutoCloseable {
+  /** Length of a robot loop, as the robot runs them. */
+  public static final double kLoopSeconds = 0.02;
+
+  /** The most LEDs recorded per frame; room for every view of the robot's signals. */
+  public static final int kMaxLEDs = 64;
+
+  /** Robot modes the runner can put the robot in, as the Driver Station would. */
+  public enum Mode {
+    kDisabled,
+    kAutonomous,
+    kTeleop,
+    kTest
+  }
+
+  /** What happened to a command. */
+  public enum CommandEventKind {
+    kInitialize,
+    kFinish,
+    kInterrupt
+  }
+
+  /**
+   * A command starting, finishing or being interrupted.
+   *
+   * @param time seconds since the runner was created
+   * @param kind what happened
+   * @param name the command's name
+   */
+  public record CommandEvent(double time, CommandEventKind kind, String name) {}
+
+  private record ScriptedAction(double time, long order, Runnable action) {}
+
+  // the scheduler keeps its callbacks for good, so they're added once and record to the open runner
+  private static boolean s_callbacksAdded;
+  private static volatile SimulationRunner s_open;
+
+  private final double m_startTime;
+  private final LEDFrameCapture m_leds;
+  private final XboxControllerSim m_controller;
+  private final List<CommandEvent> m_commandEvents = new ArrayList<>();
+  private final PriorityQueue<ScriptedAction> m_script =
+      new PriorityQueue<>(
+          Comparator.comparingDouble(ScriptedAction::time)
+              .thenComparingLong(ScriptedAction::order));
+  private long m_scriptedCount;
+  private final Robot m_robot;
+  private final Thread m_robotThread;
+
+  /**
+   * Creates the robot, disabled, and starts it on paused time.
+   *
+   * @param frameCapacity how many of the most recent LED frames to keep; one is sent every loop
+   * @throws IllegalStateException if another runner is open
+   */
+  public SimulationRunner(int frameCapacity) {
+    if (s_open != null) {
+      throw new IllegalStateException("Another SimulationRunner is open");
+    }
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Simulator HAL failed to initialize");
+    }
+    SimHooks.pauseTiming();
+    m_startTime = Timer.getFPGATimestamp();
+
+    DriverStationSim.setDsAttached(true);
+    m_controller = new XboxControllerSim(0); // the operator's controller port in RobotContainer
+    setMode(Mode.kDisabled);
+
+    if (!s_callbacksAdded) {
+      CommandScheduler.getInstance()
+          .onCommandInitialize(command -> recordToOpen(CommandEventKind.kInitialize, command));
+      CommandScheduler.getInstance()
+          .onCommandFinish(command -> recordToOpen(CommandEventKind.kFinish, command));
+      CommandScheduler.getInstance()
+          .onCommandInterrupt(command -> recordToOpen(CommandEventKind.kInterrupt, command));
+      s_callbacksAdded = true;
+    }
+
+    m_leds = new LEDFrameCapture(frameCapacity, kMaxLEDs, LEDFrameCapture.Stage.kWritten);
+    m_robot = new Robot(m_leds);
+    m_robotThread = new Thread(m_robot::startCompetition, "Simulated robot");
+    m_robotThread.setDaemon(true);
+    s_open = this;
+    m_robotThread.start();
+    SimHooks.stepTiming(0.0); // wait for the robot to start and reach its first loop
+  }
+
+  /**
+   * Gets the robot time.
+   *
+   * @return seconds since the runner was created
+   */
+  public double getTime() {
+    return Timer.getFPGATimestamp() - m_startTime;
+  }
+
+  /**
+   * Scripts an action, such as a change of mode or controller input, to be done between robot
+   * loops. It's done before the first loop that starts at or after the given time; actions for the
+   * same time are done in the order they were scripted.
+   *
+   * @param seconds when to do it, in seconds since the runner was created
+   * @param action what to do; it runs on the caller's thread while the robot waits
+   */
+  public void at(double seconds, Runnable action) {
+    m_script.add(new ScriptedAction(seconds, m_scriptedCount++, action));
+  }
+
+  /**
+   * Puts the robot in a mode, as the Driver Station would. The robot sees it on its next loop.
+   *
+   * @param mode the mode
+   */
+  public void setMode(Mode mode) {
+    DriverStationSim.setAutonomous(mode == Mode.kAutonomous);
+    DriverStationSim.setTest(mode == Mode.kTest);
+    DriverStationSim.setEnabled(mode != Mode.kDisabled);
+    DriverStationSim.notifyNewData();
+  }
+
+  /**
+   * Gets the operator's controller. Changes to it are seen by the robot on its next loop when
+   * they're made in a scripted action; otherwise call its {@code notifyNewData()}.
+   *
+   * @return the simulated operator's controller
+   */
+  public XboxControllerSim getController() {
+    return m_controller;
+  }
+
+  /**
+   * Runs the robot for a while, doing the scripted actions as their times come.
+   *
+   * @param seconds how long to run; rounded to whole robot loops
+   */
+  public void runFor(double seconds) {
+    for (long loop = Math.round(seconds / kLoopSeconds); loop > 0; loop--) {
+      step();
+    }
+  }
+
+  /**
+   * Runs the robot until a condition is met, checking it after every loop.
+   *
+   * @param condition when to stop
+   * @param timeoutSeconds the longest to run
+   * @return true if the condition was met, false if the time ran out
+   */
+  public boolean runUntil(BooleanSupplier condition, double timeoutSeconds) {
+    for (long loop = Math.round(timeoutSeconds / kLoopSeconds); loop > 0; loop--) {
+      step();
+      if (condition.getAsBoolean()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the LEDs the robot has sent, one frame per loop. {@link #getFrameTime(long)} gives a
+   * frame's time on the runner's clock.
+   *
+   * @return the recorded LED frames
+   */
+  public LEDFrameCapture getLEDs() {
+    return m_leds;
+  }
+
+  /**
+   * Gets when an LED frame was sent.
+   *
+   * @param frame the frame number
+   * @return seconds since the runner was created
+   */
+  public double getFrameTime(long frame) {
+    return m_leds.getTimestamp(frame) * 1e-6 - m_startTime;
+  }
+
+  /**
+   * Gets the command events so far.
+   *
+   * @return the events, in the order they happened
+   */
+  public synchronized List<CommandEvent> getCommandEvents() {
+    return List.copyOf(m_commandEvents);
+  }
+
+  /**
+   * Gets the command events so far of commands with a name.
+   *
+   * @param name the command name
+   * @return the events of commands with that name, in the order they happened
+   */
+  public synchronized List<CommandEvent> getCommandEvents(String name) {
+    return m_commandEvents.stream().filter(event -> event.name().equals(name)).toList();
+  }
+
+  /** Stops the robot, clears the command scheduler and returns the simulator to real time. */
+  @Override
+  public void close() {
+    s_open = null;
+    m_robot.endCompetition();
+    try {
+      m_robotThread.interrupt();
+      m_robotThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    m_robot.close();
+
+    CommandScheduler.getInstance().cancelAll();
+    CommandScheduler.getInstance().unregisterAllSubsystems();
+    CommandScheduler.getInstance().getDefaultButtonLoop().clear();
+    DriverStationSim.resetData();
+    SimHooks.resumeTiming();
+  }
+
+  /** Does the actions that are due, then runs one robot loop. */
+  private void step() {
+    boolean acted = false;
+    // a little slack so actions land on the loop they were meant for despite rounding
+    while (!m_script.isEmpty() && m_script.peek().time() <= getTime() + kLoopSeconds * 1e-3) {
+      m_script.poll().action().run();
+      acted = true;
+    }
+    if (acted) {
+      DriverStationSim.notifyNewData();
+    }
+    SimHooks.stepTiming(kLoopSeconds);
+  }
+
+  /**
+   * Records a command event to the open runner, if there is one; called on the robot's thread by
+   * the scheduler.
+   *
+   * @param kind what happened
+   * @param command the command it happened to
+   */
+  private static void recordToOpen(CommandEventKind kind, Command command) {
+    SimulationRunner runner = s_open;
+    if (runner != null) {
+      runner.record(kind, command);
+    }
+  }
+
+  /**
+   * Records a command event.
+   *
+   * @param kind what happened
+   * @param command the command it happened to
+   */
+  private synchronized void record(CommandEventKind kind, Command command) {
+    m_commandEvents.add(new CommandEvent(getTime(), kind, command.getName()));
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.networktables.IntegerSubscriber;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The History FSM's color changes, seen by the pattern id it publishes for the history demo view,
+ * for checking their timing whether the FSM runs on its own or in the whole robot. Changes are
+ * counted from the color shown when this is created.
+ */
+public final class HistoryColorChanges implements AutoCloseable {
+  private final IntegerSubscriber m_patternId =
+      NetworkTableInstance.getDefault()
+          .getTable("Team4237")
+          .getSubTable("LEDs")
+          .getSubTable("HISTORYDEMO")
+          .getIntegerTopic("patternId")
+          .subscribe(0);
+  private final List<Double> m_times = new ArrayList<>();
+  private final List<Long> m_colors = new ArrayList<>();
+  private long m_shown = m_patternId.get();
+
+  /**
+   * Notes the color if it changed since the last look.
+   *
+   * @param time the time now, in seconds
+   */
+  public void poll(double time) {
+    long id = m_patternId.get();
+    if (id != m_shown) {
+      m_times.add(time);
+      m_colors.add(id);
+      m_shown = id;
+    }
+  }
+
+  /**
+   * Gets how many times the color changed.
+   *
+   * @return the number of changes
+   */
+  public int getCount() {
+    return m_colors.size();
+  }
+
+  /**
+   * Asserts that every change came in the first loop after the change period was up, and that no
+   * color was shown again within the lockout period of showing it.
+   *
+   * @param changePeriod the FSM's time between changes, in seconds
+   * @param lockout the FSM's time before a color may be reused, in seconds
+   * @param loopSeconds the length of a robot loop
+   */
+  public void assertOnTimeWithoutRepeats(double changePeriod, double lockout, double loopSeconds) {
+    for (int i = 1; i < m_times.size(); i++) {
+      double interval = m_times.get(i) - m_times.get(i - 1);
+      assertTrue(
+          interval > changePeriod - loopSeconds / 2 && interval < changePeriod + 2 * loopSeconds,
+          "color changed after " + interval + " s at " + m_times.get(i) + " s");
+    }
+    for (int i = 0; i < m_colors.size(); i++) {
+      for (int j = i + 1; j < m_colors.size() && m_times.get(j) - m_times.get(i) < lockout; j++) {
+        assertNotEquals(m_colors.get(i), m_colors.get(j), "color " + i + " reused as color " + j);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    m_patternId.close();
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static frc.robot.AllocationAssertions.assertSteadyState;
+import static frc.robot.subsystems.RobotSignalsSimulation.kLoopSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.LEDFrameCapture;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The History FSM changes color on time without reusing a color during its lockout, and polling it
+ * and changing colors allocate nothing. Time is the simulator's, stepped one robot loop at a time.
+ */
+class HistoryFSMTest {
+  private static final int kFirstLED = 24; // where RobotSignals places the history demo view
+  private static final int kLastLED = 31;
+
+  private RobotSignalsSimulation m_simulation;
+  private HistoryFSM m_historyFSM;
+  private HistoryColorChanges m_colorChanges;
+
+  @BeforeEach
+  void setUp() {
+    m_simulation = new RobotSignalsSimulation();
+    m_simulation.setEnabled(true); // the FSM's commands don't run disabled
+    m_historyFSM = new HistoryFSM(m_simulation.getSignals().m_historyDemo);
+    m_colorChanges = new HistoryColorChanges();
+  }
+
+  @AfterEach
+  void tearDown() {
+    m_colorChanges.close();
+    m_simulation.close();
+  }
+
+  @Test
+  void newColorLightsTheView() {
+    m_historyFSM.newColor().schedule();
+    for (int loop = 0; loop < 3; loop++) {
+      m_simulation.runLoop();
+    }
+
+    LEDFrameCapture leds = m_simulation.getLEDs();
+    long frame = leds.getLatestFrame();
+    int color = leds.getPacked(frame, kFirstLED);
+    assertNotEquals(0, color, "history demo is still off");
+    for (int led = kFirstLED; led <= kLastLED; led++) {
+      assertEquals(color, leds.getPacked(frame, led), "LED " + led);
+    }
+  }
+
+  @Test
+  void colorsChangeOnTimeAndAreNotReusedDuringTheLockout() {
+    // as RobotContainer binds it, so each color change sets up the next
+    new Trigger(m_historyFSM::timesUp).onTrue(m_historyFSM.newColor());
+    m_historyFSM.newColor().schedule();
+
+    double changePeriod = m_historyFSM.m_changeColorPeriod.in(Seconds);
+    double lockout = m_historyFSM.m_colorLockoutPeriod.in(Seconds);
+    // three lockout periods
+    for (int loop = 0; loop < 3 * lockout / kLoopSeconds; loop++) {
+      m_simulation.runLoop();
+      m_colorChanges.poll(Timer.getFPGATimestamp());
+    }
+
+    int colors = m_colorChanges.getCount();
+    assertTrue(colors > 2 * lockout / changePeriod, "only " + colors + " colors");
+    m_colorChanges.assertOnTimeWithoutRepeats(changePeriod, lockout, kLoopSeconds);
+  }
+
+  @Test
+  void waitingForTheNextColorAllocatesNothing() {
+    // no color change is due, as before the first one
+    assertSteadyState("timesUp", () -> assertFalse(m_historyFSM.timesUp()));
+  }
+
+  @Test
+  void newColorAllocatesNothing() {
+    // run the command's parts directly, so only the FSM's work is measured, not the scheduler's
+    Command newColor = m_historyFSM.newColor();
+    assertSteadyState(
+        "newColor",
+        () -> {
+          newColor.initialize();
+          while (!newColor.isFinished()) {
+            newColor.execute();
+          }
+          newColor.end(false);
+        });
+  }
+}
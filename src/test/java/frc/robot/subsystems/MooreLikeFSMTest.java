@@ -0,0 +1,109 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.AllocationAssertions.assertSteadyState;
+import static frc.robot.subsystems.RobotSignalsSimulation.kKnightRiderLength;
+import static frc.robot.subsystems.RobotSignalsSimulation.kLoopSeconds;
+import static frc.robot.subsystems.RobotSignalsSimulation.knightRiderHead;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Color;
+
+import edu.wpi.first.wpilibj2.command.Command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Moore-Like FSM's scanner moves one LED per transition, back and forth across its view, and
+ * its steady-state action allocates nothing. Time is the simulator's, stepped one robot loop at a
+ * time; the FSM runs disabled, so the robot is left disabled.
+ */
+class MooreLikeFSMTest {
+  private static final double kPeriodFactor = 10.0; // a transition every 1/10 second
+
+  private RobotSignalsSimulation m_simulation;
+  private MooreLikeFSM m_mooreLikeFSM;
+
+  @BeforeEach
+  void setUp() {
+    m_simulation = new RobotSignalsSimulation();
+    m_mooreLikeFSM =
+        new MooreLikeFSM(m_simulation.getSignals().m_knightRider, kPeriodFactor, Color.kRed);
+  }
+
+  @AfterEach
+  void tearDown() {
+    m_simulation.close();
+  }
+
+  @Test
+  void scannerSweepsBackAndForthOneLEDAtATime() {
+    List<Integer> heads = new ArrayList<>();
+    // 5 seconds, well before the FSM is stopped as a test of stopFSM()
+    for (int loop = 0; loop < 5 / kLoopSeconds; loop++) {
+      m_simulation.runLoop();
+      int head = knightRiderHead(m_simulation.getLEDs());
+      if (heads.isEmpty() || heads.get(heads.size() - 1) != head) {
+        heads.add(head);
+      }
+    }
+
+    // 14 transitions make a round trip, each 1/10 of a second
+    assertTrue(heads.size() >= 3 * 14, "only " + heads.size() + " transitions");
+    for (int i = 1; i < heads.size(); i++) {
+      assertEquals(1, Math.abs(heads.get(i) - heads.get(i - 1)), "jumped at transition " + i);
+      if (i >= 2 && heads.get(i).equals(heads.get(i - 2))) {
+        int turn = heads.get(i - 1);
+        // turning back anywhere but the ends would be a wrong transition
+        assertTrue(turn == 0 || turn == kKnightRiderLength - 1, "turned back at LED " + turn);
+      }
+    }
+  }
+
+  @Test
+  void scannerStopsAndRestarts() {
+    // the FSM stops itself 10 seconds after it's created, and restarts 4 seconds after that
+    for (int loop = 0; loop < 10.5 / kLoopSeconds; loop++) {
+      m_simulation.runLoop();
+    }
+    int stoppedAt = knightRiderHead(m_simulation.getLEDs());
+    for (int loop = 0; loop < 3 / kLoopSeconds; loop++) {
+      m_simulation.runLoop();
+      assertEquals(stoppedAt, knightRiderHead(m_simulation.getLEDs()), "moved while stopped");
+    }
+
+    int moves = 0;
+    int last = stoppedAt;
+    for (int loop = 0; loop < 2 / kLoopSeconds; loop++) {
+      m_simulation.runLoop();
+      int head = knightRiderHead(m_simulation.getLEDs());
+      if (head != last) {
+        moves++;
+        last = head;
+      }
+    }
+    assertTrue(moves > 5, "only " + moves + " moves after restarting");
+  }
+
+  @Test
+  void steadyStateAllocatesNothing() {
+    for (int loop = 0; loop < 5; loop++) {
+      m_simulation.runLoop();
+    }
+    // run the current state's command directly, so only the FSM's work is measured, not the
+    // scheduler's
+    Command state = m_mooreLikeFSM.getCurrentCommand();
+    assertNotNull(state);
+    assertSteadyState("steady-state action", state::execute);
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import frc.robot.LEDFrameCapture;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * The robot's signals on their own, without the rest of the robot, on the simulator's time stepped
+ * one robot loop at a time, for testing the demonstrations that drive them. The LEDs are recorded
+ * with the colors the patterns wrote.
+ *
+ * <pre>
+ *   try (var simulation = new RobotSignalsSimulation()) {
+ *     var fsm = new MooreLikeFSM(simulation.getSignals().m_knightRider, 10.0, Color.kRed);
+ *     simulation.runLoop();
+ *     // ... look at simulation.getLEDs() ...
+ *   }
+ * </pre>
+ *
+ * <p>There is one command scheduler and one simulator per JVM, so only one simulation may be open
+ * at a time; closing it clears the scheduler and returns the simulator to real time.
+ *
+ * <p>{@link #knightRiderHead(LEDFrameCapture)} reads the LEDs of the signals wherever they were
+ * recorded, so the tests that run the whole robot share it.
+ */
+public final class RobotSignalsSimulation implements AutoCloseable {
+  /** Length of a robot loop. */
+  static final double kLoopSeconds = 0.02;
+
+  /** Where RobotSignals places the Knight Rider view. */
+  static final int kKnightRiderFirstLED = 40;
+
+  /** The length of the Knight Rider view. */
+  static final int kKnightRiderLength = 8;
+
+  private final LEDFrameCapture m_leds;
+  private final RobotSignals m_signals;
+
+  /** Creates the signals, with the robot disabled, and pauses the simulator's time. */
+  RobotSignalsSimulation() {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Simulator HAL failed to initialize");
+    }
+    SimHooks.pauseTiming();
+    m_leds = new LEDFrameCapture(16, 56, LEDFrameCapture.Stage.kWritten);
+    m_signals = new RobotSignals(m_leds);
+  }
+
+  /**
+   * Enables or disables the robot, as the Driver Station would. Commands see it on the next loop.
+   *
+   * @param enabled true to enable the robot
+   */
+  void setEnabled(boolean enabled) {
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.notifyNewData();
+  }
+
+  /** Runs one robot loop as the robot would, after advancing time by one loop. */
+  void runLoop() {
+    SimHooks.stepTiming(kLoopSeconds);
+    CommandScheduler.getInstance().run();
+    m_signals.runAfterCommands();
+  }
+
+  /**
+   * Gets the signals.
+   *
+   * @return the signals
+   */
+  RobotSignals getSignals() {
+    return m_signals;
+  }
+
+  /**
+   * Gets the LEDs the signals have sent, one frame per loop.
+   *
+   * @return the recorded LED frames
+   */
+  LEDFrameCapture getLEDs() {
+    return m_leds;
+  }
+
+  /**
+   * Finds the Knight Rider scanner's head: the brightest LED of its view, since the tail behind it
+   * fades.
+   *
+   * @param leds the recorded LEDs of the signals
+   * @return the head's index in the view, in the latest frame
+   */
+  public static int knightRiderHead(LEDFrameCapture leds) {
+    long frame = leds.getLatestFrame();
+    int head = 0;
+    int brightest = -1;
+    for (int led = 0; led < kKnightRiderLength; led++) {
+      int red = leds.getLED8Bit(frame, kKnightRiderFirstLED + led).red;
+      if (red > brightest) {
+        brightest = red;
+        head = led;
+      }
+    }
+    return head;
+  }
+
+  /** Clears the command scheduler and the Driver Station, and returns to real time. */
+  @Override
+  public void close() {
+    CommandScheduler.getInstance().cancelAll();
+    CommandScheduler.getInstance().unregisterAllSubsystems();
+    CommandScheduler.getInstance().getDefaultButtonLoop().clear();
+    DriverStationSim.resetData();
+    SimHooks.resumeTiming();
+  }
+}